@@ -0,0 +1,349 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Générateur de charge sans interface : N joueurs simulés parlent le vrai protocole TCP au serveur.
+ *
+ *   java BotHarness --bots=500 --duration=30 --move-hz=30 --shoot-hz=2 --chat-hz=0.1
+ *
+ * Chaque bot rejoint une partie (--players-per-match par partie), se déplace au hasard, tire et
+ * discute aux fréquences demandées, envoie un PING par seconde et répond à ceux du serveur. Latences mesurées :
+ *   PING  aller-retour PING/PONG, sans passer par la partie ;
+ *   CHAT  envoi d'un message jusqu'à sa rediffusion au bot lui-même ;
+ *   SHOOT envoi d'un tir jusqu'à l'ENEMY_UPDATE qui annonce le projectile.
+ * Une ligne par seconde donne le débit, puis un résumé final les percentiles et les déconnexions.
+ * Pour trouver le point de rupture d'un moteur, relancer en augmentant --bots contre
+ * Server --engine=threads|virtual|nio.
+ */
+public class BotHarness {
+    String host = "localhost";
+    int port = 5555;
+    int bots = 100;
+    int playersPerMatch = 4;
+    int durationSeconds = 30;
+    // Délai entre deux connexions, pour ne pas saturer la file d'attente d'accept du serveur
+    int rampMillis = 5;
+    double moveHz = 30;
+    double shootHz = 2;
+    double chatHz = 0.1;
+    double pingHz = 1;
+
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicInteger joinFailures = new AtomicInteger();
+    private final AtomicInteger disconnects = new AtomicInteger();
+    private final Samples pingLatency = new Samples();
+    private final Samples chatLatency = new Samples();
+    private final Samples shootLatency = new Samples();
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        BotHarness harness = parse(args);
+        harness.run();
+    }
+
+    static BotHarness parse(String[] args) {
+        BotHarness harness = new BotHarness();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (key) {
+                case "host":
+                    harness.host = value;
+                    break;
+                case "port":
+                    harness.port = Integer.parseInt(value);
+                    break;
+                case "bots":
+                    harness.bots = Integer.parseInt(value);
+                    break;
+                case "players-per-match":
+                    harness.playersPerMatch = Integer.parseInt(value);
+                    break;
+                case "duration":
+                    harness.durationSeconds = Integer.parseInt(value);
+                    break;
+                case "ramp-ms":
+                    harness.rampMillis = Integer.parseInt(value);
+                    break;
+                case "move-hz":
+                    harness.moveHz = Double.parseDouble(value);
+                    break;
+                case "shoot-hz":
+                    harness.shootHz = Double.parseDouble(value);
+                    break;
+                case "chat-hz":
+                    harness.chatHz = Double.parseDouble(value);
+                    break;
+                case "ping-hz":
+                    harness.pingHz = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: --" + key);
+            }
+        }
+        return harness;
+    }
+
+    void run() throws InterruptedException {
+        System.out.printf("%d bots -> %s:%d, %d per match, move %.1f Hz, shoot %.1f Hz, chat %.2f Hz%n",
+                bots, host, port, playersPerMatch, moveHz, shootHz, chatHz);
+        CountDownLatch finished = new CountDownLatch(bots);
+        for (int i = 0; i < bots; i++) {
+            Bot bot = new Bot("bot" + i, 1 + i / Math.max(1, playersPerMatch), i);
+            Thread.ofVirtual().name(bot.name).start(() -> {
+                try {
+                    bot.run();
+                } finally {
+                    finished.countDown();
+                }
+            });
+            if (rampMillis > 0) {
+                Thread.sleep(rampMillis);
+            }
+        }
+
+        long lastSent = 0;
+        long lastReceived = 0;
+        long lastBytes = 0;
+        for (int second = 1; second <= durationSeconds; second++) {
+            Thread.sleep(1000);
+            long sent = messagesSent.sum();
+            long received = messagesReceived.sum();
+            long bytes = bytesReceived.sum();
+            System.out.printf("t=%3ds connected=%5d sent=%,8d/s received=%,9d/s in=%,8.1f KB/s disconnects=%d%n",
+                    second, connected.get(), sent - lastSent, received - lastReceived,
+                    (bytes - lastBytes) / 1024.0, disconnects.get());
+            lastSent = sent;
+            lastReceived = received;
+            lastBytes = bytes;
+        }
+        running = false;
+        finished.await();
+
+        System.out.printf("sent %,d, received %,d (%.1f MB) in %d s%n", messagesSent.sum(), messagesReceived.sum(),
+                bytesReceived.sum() / 1024.0 / 1024.0, durationSeconds);
+        System.out.printf("join failures %d, unexpected disconnects %d%n", joinFailures.get(), disconnects.get());
+        System.out.printf("%-6s %8s | %9s %9s %9s %9s%n", "", "samples", "p50", "p90", "p99", "max");
+        pingLatency.print("PING");
+        chatLatency.print("CHAT");
+        shootLatency.print("SHOOT");
+    }
+
+    // Un joueur simulé : le thread virtuel du bot envoie, un second lit les réponses
+    private class Bot {
+        final String name;
+        final int matchId;
+        final Random random;
+        // Heures d'envoi des tirs pas encore annoncés par le serveur, dans l'ordre
+        final Queue<Long> pendingShots = new ConcurrentLinkedQueue<>();
+        Socket socket;
+        DataOutputStream out;
+        int x = 380;
+        int y = 450;
+
+        Bot(String name, int matchId, long seed) {
+            this.name = name;
+            this.matchId = matchId;
+            this.random = new Random(seed);
+        }
+
+        void run() {
+            try {
+                socket = new Socket();
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(host, port));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new CountingInputStream(socket.getInputStream())));
+                send(GameMessage.createJoinMessage(name, random.nextInt(3), matchId));
+                GameMessage response = MessageCodec.read(in);
+                if (!"NAME_ACCEPTED".equals(response.getChatContent())) {
+                    joinFailures.incrementAndGet();
+                    return;
+                }
+                connected.incrementAndGet();
+                Thread reader = Thread.ofVirtual().name(name + "-reader").start(() -> read(in));
+                try {
+                    play();
+                } finally {
+                    socket.close();
+                    reader.join();
+                    connected.decrementAndGet();
+                }
+            } catch (IOException e) {
+                if (running) {
+                    if (out == null) {
+                        joinFailures.incrementAndGet();
+                    } else {
+                        disconnects.incrementAndGet();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Chaque action part à sa fréquence, avec un décalage aléatoire pour que les bots ne soient pas synchrones
+        private void play() throws IOException, InterruptedException {
+            long start = System.nanoTime();
+            long nextMove = start + jitter(moveHz);
+            long nextShot = start + jitter(shootHz);
+            long nextChat = start + jitter(chatHz);
+            long nextPing = start + jitter(pingHz);
+            while (running && !socket.isClosed()) {
+                long now = System.nanoTime();
+                if (now >= nextMove) {
+                    x = Math.max(0, Math.min(750, x + random.nextInt(11) - 5));
+                    y = Math.max(0, Math.min(550, y + random.nextInt(11) - 5));
+                    send(GameMessage.createPositionDelta(name, GameMessage.FIELD_X | GameMessage.FIELD_Y,
+                            x, y, 3, 0, matchId));
+                    nextMove += period(moveHz);
+                }
+                if (now >= nextShot) {
+                    pendingShots.add(System.nanoTime());
+                    send(GameMessage.createShootMessage(name, x + 25, y, matchId));
+                    nextShot += period(shootHz);
+                }
+                if (now >= nextChat) {
+                    send(GameMessage.createChatMessage(name, "bot " + System.nanoTime(), matchId));
+                    nextChat += period(chatHz);
+                }
+                if (now >= nextPing) {
+                    send(GameMessage.createPingMessage(System.nanoTime()));
+                    nextPing += period(pingHz);
+                }
+                long next = Math.min(Math.min(nextMove, nextShot), Math.min(nextChat, nextPing));
+                // Au plus 100 ms : un bot immobile (toutes les fréquences à 0) voit aussi la fin du test
+                long sleep = Math.min(next - System.nanoTime(), 100_000_000L);
+                if (sleep > 0) {
+                    Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+                }
+            }
+        }
+
+        private void read(DataInputStream in) {
+            try {
+                while (true) {
+                    GameMessage message = MessageCodec.read(in);
+                    messagesReceived.increment();
+                    long now = System.nanoTime();
+                    switch (message.getType()) {
+                        case PONG:
+                            // Le bot envoie son nanoTime comme heure client : le serveur le renvoie tel quel
+                            pingLatency.add(now - message.getClientTime());
+                            break;
+                        case PING:
+                            // Comme ClientManager : sans réponse, un bot immobile passerait pour inactif et
+                            // serait déconnecté par le serveur
+                            send(GameMessage.createPongMessage(message.getClientTime(), ClockSync.localMillis()));
+                            break;
+                        case CHAT_MESSAGE:
+                            String content = message.getChatContent();
+                            if (name.equals(message.getPlayerName()) && content.startsWith("bot ")) {
+                                chatLatency.add(now - Long.parseLong(content.substring(4)));
+                            }
+                            break;
+                        case ENEMY_UPDATE:
+                            for (GameMessage.EntityState entity : message.getEntityStates()) {
+                                if (entity.getKind() == GameMessage.KIND_PROJECTILE && name.equals(entity.getOwner())) {
+                                    Long sentAt = pendingShots.poll();
+                                    if (sentAt != null) {
+                                        shootLatency.add(now - sentAt);
+                                    }
+                                }
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } catch (IOException e) {
+                if (running && !socket.isClosed()) {
+                    disconnects.incrementAndGet();
+                    try {
+                        socket.close();
+                    } catch (IOException ignored) {
+                        // Déjà fermé
+                    }
+                }
+            }
+        }
+
+        // Appelé par la boucle du bot et par son lecteur (réponses aux PING)
+        private synchronized void send(GameMessage message) throws IOException {
+            MessageCodec.write(out, message);
+            out.flush();
+            messagesSent.increment();
+        }
+
+        private long period(double hz) {
+            return hz > 0 ? (long) (1_000_000_000L / hz) : Long.MAX_VALUE / 4;
+        }
+
+        private long jitter(double hz) {
+            return hz > 0 ? (long) (random.nextDouble() * period(hz)) : Long.MAX_VALUE / 4;
+        }
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytesReceived.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                bytesReceived.add(n);
+            }
+            return n;
+        }
+    }
+
+    // Latences en nanosecondes, triées seulement pour le résumé final
+    private static class Samples {
+        private long[] values = new long[1024];
+        private int count;
+
+        synchronized void add(long nanos) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = nanos;
+        }
+
+        synchronized void print(String label) {
+            if (count == 0) {
+                System.out.printf("%-6s %8d |%n", label, 0);
+                return;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            System.out.printf("%-6s %,8d | %6.2f ms %6.2f ms %6.2f ms %6.2f ms%n", label, count,
+                    sorted[count / 2] / 1e6, sorted[count * 9 / 10] / 1e6, sorted[count * 99 / 100] / 1e6,
+                    sorted[count - 1] / 1e6);
+        }
+    }
+}
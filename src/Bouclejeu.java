@@ -39,6 +39,10 @@ public class Bouclejeu extends JPanel {
     private boolean isWinner = false;
     private int finalScore = 0;
 
+    // HUD réseau (F3), débits recalculés une fois par seconde
+    private boolean showNetDebug = false;
+    private long lastRateSample = 0;
+
     public Bouclejeu(FenetreJeu parent, String playerName, int difficulty, int shipType, boolean isMultiplayer) {
         this.parent = parent;
         this.playerName = playerName;
@@ -110,6 +114,10 @@ public class Bouclejeu extends JPanel {
             handleChatInput();
             return;
         }
+        if (e.getKeyCode() == KeyEvent.VK_F3) {
+            showNetDebug = !showNetDebug;
+            return;
+        }
         if (gameOver) {
             if (e.getKeyCode() == KeyEvent.VK_ENTER) {
                 parent.showMenu();
@@ -118,10 +126,12 @@ public class Bouclejeu extends JPanel {
         }
 
         if (e.getKeyCode() == KeyEvent.VK_SPACE && player.canShoot()) {
-            Projectile projectile = new Projectile(player.getCenterX(), player.getY());
-            projectiles.add(projectile);
             player.shoot();
 
+            // Un serveur qui simule renvoie le projectile dans un ENEMY_UPDATE ; sinon il est local
+            if (!isMultiplayer || !clientManager.isServerAuthoritative()) {
+                projectiles.add(new Projectile(player.getCenterX(), player.getY()));
+            }
             if (isMultiplayer) {
                 clientManager.sendProjectile(player.getCenterX(), player.getY());
             }
@@ -139,6 +149,10 @@ public class Bouclejeu extends JPanel {
 
     private void startGameLoop() {
         gameTimer = new Timer(16, e -> {
+            // Même pendant une transition ou après la partie : les threads d'écoute n'attendent pas
+            if (isMultiplayer) {
+                clientManager.processNetworkEvents();
+            }
             if (!gameOver) {
                 updateGame();
             }
@@ -161,6 +175,8 @@ public class Bouclejeu extends JPanel {
 
         if (isMultiplayer) {
             clientManager.sendPosition(player.getX(), player.getY(), player.getHealth(), score);
+            clientManager.updateRemotePlayers();
+            clientManager.updateRemoteEntities();
             clientManager.updateRemoteProjectiles();
         }
 
@@ -211,8 +227,7 @@ public class Bouclejeu extends JPanel {
                     projectile.setActive(false);
 
                     if (!enemy.isAlive()) {
-                        score += (enemy.getType() == 0) ? 10 :
-                                (enemy.getType() == 1) ? 15 : 30;
+                        score += Enemy.pointsOf(enemy.getType());
                         pp.enemyDefeated();
                     }
                 }
@@ -245,13 +260,13 @@ public class Bouclejeu extends JPanel {
             }
 
             // Collisions entre projectiles distants et joueur local
-            new ArrayList<>(clientManager.getRemoteProjectiles()).forEach(projectile -> {
+            for (ClientManager.RemoteProjectile projectile : clientManager.getRemoteProjectiles()) {
                 if (projectile.isActive() && projectile.getHitbox().intersects(player.getHitbox())) {
                     projectile.setActive(false);
                     player.takeDamage();
                     checkGameOver();
                 }
-            });
+            }
         }
     }
 
@@ -294,6 +309,10 @@ public class Bouclejeu extends JPanel {
 
         // En mode multijoueur, dessiner les joueurs distants et leurs projectiles
         if (isMultiplayer) {
+            for (ClientManager.RemoteEntity entity : clientManager.getRemoteEntities()) {
+                entity.draw(g);
+            }
+
             for (ClientManager.RemotePlayer remotePlayer : clientManager.getRemotePlayers()) {
                 remotePlayer.draw(g);
             }
@@ -312,6 +331,10 @@ public class Bouclejeu extends JPanel {
         // Afficher le score et le niveau
         drawHUD(g);
 
+        if (isMultiplayer && showNetDebug) {
+            drawNetDebug(g);
+        }
+
         // Afficher les transitions de niveau
         if (isLevelTransition) {
             drawLevelTransition(g);
@@ -364,6 +387,47 @@ public class Bouclejeu extends JPanel {
         }
     }
 
+    private void drawNetDebug(Graphics g) {
+        NetStats stats = clientManager.getStats();
+        long now = System.nanoTime();
+        if (now - lastRateSample >= 1_000_000_000L) {
+            stats.sampleRates(now);
+            lastRateSample = now;
+        }
+
+        List<String> lines = new ArrayList<>();
+        if (stats.getRttCount() > 0) {
+            lines.add(String.format("RTT %.0f ms  p50 %.1f  p99 %.1f", stats.getLastRttMicros() / 1000.0,
+                    stats.rttPercentileMicros(50) / 1000.0, stats.rttPercentileMicros(99) / 1000.0));
+        } else {
+            lines.add("RTT -");
+        }
+        lines.add(String.format("In  %.1f KB/s  %.0f msg/s", stats.getBytesInPerSecond() / 1024,
+                stats.getMessagesInPerSecond()));
+        lines.add(String.format("Out %.1f KB/s  %.0f msg/s", stats.getBytesOutPerSecond() / 1024,
+                stats.getMessagesOutPerSecond()));
+        lines.add("UDP " + (clientManager.isUdpConfirmed() ? "actif" : "inactif"));
+        lines.add(String.format("%-15s %6s / %6s", "Messages", "reçus", "envoyés"));
+        for (GameMessage.MessageType type : GameMessage.MessageType.values()) {
+            long received = stats.getMessagesIn(type);
+            long sent = stats.getMessagesOut(type);
+            if (received > 0 || sent > 0) {
+                lines.add(String.format("%-15s %6d / %6d", type, received, sent));
+            }
+        }
+
+        int x = getWidth() - 270;
+        int y = 45;
+        g.setColor(new Color(0, 0, 0, 150));
+        g.fillRect(x - 10, y - 15, 270, lines.size() * 14 + 10);
+        g.setColor(Color.GREEN);
+        g.setFont(new Font("Monospaced", Font.PLAIN, 11));
+        for (String line : lines) {
+            g.drawString(line, x, y);
+            y += 14;
+        }
+    }
+
     private void drawLevelTransition(Graphics g) {
         g.setColor(new Color(0, 0, 0, 150));
         g.fillRect(0, 0, getWidth(), getHeight());
@@ -478,6 +542,19 @@ public class Bouclejeu extends JPanel {
         }
     }
 
+    // Vie et score du joueur local décidés par le serveur (entrée de GAME_STATE à notre nom)
+    public void applyServerState(int fields, int health, int score) {
+        if ((fields & GameMessage.FIELD_SCORE) != 0) {
+            this.score = score;
+        }
+        if ((fields & GameMessage.FIELD_HEALTH) != 0 && health != player.getHealth()) {
+            player.setHealth(health);
+            if (!gameOver) {
+                checkGameOver();
+            }
+        }
+    }
+
     public void handleRemoteGameOver(boolean isWinner, int finalScore) {
         gameOver = true;
         this.isWinner = isWinner;
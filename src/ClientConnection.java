@@ -0,0 +1,20 @@
+/**
+ * Connexion d'un joueur côté serveur, indépendante du moteur réseau (thread par client ou NIO).
+ */
+interface ClientConnection {
+    // Nom du joueur, null tant que la connexion n'a pas été acceptée
+    String getPlayerName();
+
+    // Met le message en file d'envoi, sans bloquer sur le réseau
+    void sendMessage(GameMessage message);
+
+    OutboundQueue getOutboundQueue();
+
+    // Compteurs de la connexion, qui alimentent aussi ceux du serveur
+    NetStats getStats();
+
+    // Limite de débit des messages reçus, vérifiée avant tout traitement
+    RateLimiter getRateLimiter();
+
+    void close();
+}
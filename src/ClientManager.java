@@ -1,7 +1,10 @@
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
 import java.awt.Image;
 import java.awt.Graphics;
 import java.awt.Color;
@@ -11,28 +14,91 @@ import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
 
 public class ClientManager {
+    // Délai entre deux positions complètes
+    private static final long KEYFRAME_INTERVAL_MS = 1000;
+    // Un simple déplacement part au plus à 30 Hz ; à la fréquence exacte des ticks (20 Hz), le battement
+    // entre envois et ticks laisserait des ticks sans mouvement et des à-coups à l'affichage
+    private static final long POSITION_SEND_INTERVAL_MS = 33;
+    // Envois pendant lesquels un champ modifié est répété en UDP, pour survivre aux pertes
+    private static final int UDP_REDUNDANCY = 3;
+
+    private static final int SERVER_PORT = 5555;
+    // Messages en attente de la boucle de jeu, par thread d'écoute ; plus d'une seconde de trafic
+    private static final int EVENT_QUEUE_CAPACITY = 1024;
+
     private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    // Non null quand le serveur tourne dans ce processus : ni socket ni sérialisation
+    private volatile LoopbackConnection loopback;
+    private DataOutputStream out;
+    private DataInputStream in;
     private String playerName;
     private int shipType;
     private final List<String> chatMessages = new ArrayList<>();
+    /*
+     * Les threads d'écoute TCP et UDP ne touchent pas à l'état de la partie : ils déposent les messages
+     * dans leur file, que la boucle de jeu vide une fois par image (processNetworkEvents). Joueurs,
+     * projectiles et ennemis ne sont donc lus et modifiés que par le thread Swing, qui dessine aussi :
+     * l'affichage voit un état cohérent sans copie ni verrou.
+     */
+    private final SpscQueue<GameMessage> tcpEvents = new SpscQueue<>(EVENT_QUEUE_CAPACITY);
+    private final SpscQueue<GameMessage> udpEvents = new SpscQueue<>(EVENT_QUEUE_CAPACITY);
     private final Set<String> onlinePlayers = new HashSet<>();
-    private final Map<String, RemotePlayer> remotePlayers = new ConcurrentHashMap<>();
+    // Dernière version reçue de la liste des joueurs, -1 avant la liste complète
+    private int rosterVersion = -1;
+    private boolean rosterResyncPending;
+    private final Map<String, RemotePlayer> remotePlayers = new HashMap<>();
     private final List<RemoteProjectile> remoteProjectiles = new ArrayList<>();
+    // Ennemis et projectiles simulés par le serveur, par identifiant
+    private final Map<Integer, RemoteEntity> remoteEntities = new HashMap<>();
     private boolean connected = false;
     private Thread listenerThread;
     private Bouclejeu gamePanel;
-    private int matchId;
+    // Attribué par le serveur dans JOIN_ACCEPTED ; 0 dans le PLAYER_JOIN pour rejoindre la partie ouverte
+    private volatile int matchId;
+    // Vrai si le serveur simule tirs et collisions (JOIN_ACCEPTED avec une fréquence de tick) ; sinon
+    // le tireur affiche son projectile et signale lui-même ses touches, comme en --tick-rate=0
+    private volatile boolean serverAuthoritative;
+    private final ClockSync clock = new ClockSync();
+    private final NetStats stats = new NetStats();
+    // Dernier état envoyé, pour n'envoyer que les champs modifiés
+    private int sentX, sentY, sentHealth, sentScore;
+    private volatile boolean forceKeyframe = true;
+    private long lastKeyframeTime;
+    private long lastPositionSend;
+    private int recentFields;
+    private int repeatsLeft;
+
+    // Canal UDP facultatif pour positions et tirs, proposé par le serveur dans JOIN_ACCEPTED
+    private volatile DatagramChannel udpChannel;
+    private int udpSessionId;
+    private int udpSeqOut;
+    private int udpLastSeqIn;
+    private boolean udpReceived;
+    // Vrai dès qu'un datagramme du serveur est arrivé : le chemin UDP fonctionne dans les deux sens
+    private volatile boolean udpConfirmed;
+    private final ByteBuffer udpSendBuffer =
+            ByteBuffer.allocate(MessageCodec.DATAGRAM_HEADER + MessageCodec.LENGTH_PREFIX + MessageCodec.MAX_FRAME_SIZE);
 
     // Représente un joueur distant
     public static class RemotePlayer {
+        // Instantanés horodatés (heure serveur) gardés pour l'interpolation
+        private static final int SNAPSHOT_CAPACITY = 32;
+        // Au-delà du dernier instantané, la trajectoire est prolongée au plus pendant ce temps
+        private static final long MAX_EXTRAPOLATION_MS = 100;
+
         private String name;
         private int x, y;
         private int health;
         private int score;
         private int shipType;
         private Image[] sprites;
+        private final long[] snapshotTimes = new long[SNAPSHOT_CAPACITY];
+        private final int[] snapshotX = new int[SNAPSHOT_CAPACITY];
+        private final int[] snapshotY = new int[SNAPSHOT_CAPACITY];
+        private int snapshotCount;
+        private int snapshotHead;
+        // Position affichée, calculée par interpolate()
+        private int renderX, renderY;
 
         public RemotePlayer(String name, int shipType) {
             this.name = name;
@@ -41,6 +107,8 @@ public class ClientManager {
             this.y = 150;  // Les joueurs distants commencent plus haut
             this.health = 3;
             this.score = 0;
+            this.renderX = x;
+            this.renderY = y;
             this.sprites = new Image[3];
             loadSprites();
         }
@@ -51,16 +119,84 @@ public class ClientManager {
             }
         }
 
-        public void update(int x, int y, int health, int score) {
-            this.x = x;
-            this.y = y;
-            this.health = health;
-            this.score = score;
+        // N'applique que les champs présents dans le masque ; la position rejoint le tampon d'interpolation
+        public void update(long serverTime, int fields, int x, int y, int health, int score) {
+            if ((fields & GameMessage.FIELD_X) != 0) this.x = x;
+            if ((fields & GameMessage.FIELD_Y) != 0) this.y = y;
+            if ((fields & GameMessage.FIELD_HEALTH) != 0) this.health = health;
+            if ((fields & GameMessage.FIELD_SCORE) != 0) this.score = score;
+            addSnapshot(serverTime);
+        }
+
+        // Le joueur n'a pas bougé à serverTime (absent d'un GAME_STATE en delta)
+        public void touch(long serverTime) {
+            addSnapshot(serverTime);
+        }
+
+        private void addSnapshot(long serverTime) {
+            if (snapshotCount > 0) {
+                int last = (snapshotHead + snapshotCount - 1) % SNAPSHOT_CAPACITY;
+                if (serverTime < snapshotTimes[last]) {
+                    return;
+                }
+                if (serverTime == snapshotTimes[last]) {
+                    snapshotX[last] = x;
+                    snapshotY[last] = y;
+                    return;
+                }
+            }
+            int slot;
+            if (snapshotCount == SNAPSHOT_CAPACITY) {
+                slot = snapshotHead;
+                snapshotHead = (snapshotHead + 1) % SNAPSHOT_CAPACITY;
+            } else {
+                slot = (snapshotHead + snapshotCount++) % SNAPSHOT_CAPACITY;
+            }
+            snapshotTimes[slot] = serverTime;
+            snapshotX[slot] = x;
+            snapshotY[slot] = y;
+        }
+
+        // Calcule la position affichée à renderTime (heure serveur, dans le passé)
+        public void interpolate(long renderTime) {
+            if (snapshotCount == 0) {
+                return;
+            }
+            int newest = (snapshotHead + snapshotCount - 1) % SNAPSHOT_CAPACITY;
+            if (renderTime >= snapshotTimes[newest]) {
+                if (snapshotCount < 2) {
+                    renderX = snapshotX[newest];
+                    renderY = snapshotY[newest];
+                    return;
+                }
+                // Données en retard : on prolonge brièvement le dernier mouvement connu
+                int previous = (newest + SNAPSHOT_CAPACITY - 1) % SNAPSHOT_CAPACITY;
+                long span = snapshotTimes[newest] - snapshotTimes[previous];
+                long ahead = Math.min(renderTime - snapshotTimes[newest], MAX_EXTRAPOLATION_MS);
+                double t = (double) ahead / span;
+                renderX = (int) Math.round(snapshotX[newest] + (snapshotX[newest] - snapshotX[previous]) * t);
+                renderY = (int) Math.round(snapshotY[newest] + (snapshotY[newest] - snapshotY[previous]) * t);
+                return;
+            }
+            for (int i = snapshotCount - 2; i >= 0; i--) {
+                int from = (snapshotHead + i) % SNAPSHOT_CAPACITY;
+                if (snapshotTimes[from] <= renderTime) {
+                    int to = (from + 1) % SNAPSHOT_CAPACITY;
+                    double t = (double) (renderTime - snapshotTimes[from]) / (snapshotTimes[to] - snapshotTimes[from]);
+                    renderX = (int) Math.round(snapshotX[from] + (snapshotX[to] - snapshotX[from]) * t);
+                    renderY = (int) Math.round(snapshotY[from] + (snapshotY[to] - snapshotY[from]) * t);
+                    return;
+                }
+            }
+            // Plus ancien que tout le tampon
+            renderX = snapshotX[snapshotHead];
+            renderY = snapshotY[snapshotHead];
         }
 
         public void draw(Graphics g) {
+            int x = renderX;
             // Mirror y-coordinate for versus effect
-            int mirroredY = 600 - y - 60;
+            int mirroredY = 600 - renderY - 60;
             Graphics2D g2d = (Graphics2D) g;
             g2d.translate(x + 25, mirroredY + 30); // Move to center of sprite
             g2d.rotate(Math.PI); // Rotate 180 degrees
@@ -81,12 +217,13 @@ public class ClientManager {
         }
 
         public Rectangle getHitbox() {
-            int mirroredY = 600 - y - 60;
-            return new Rectangle(x, mirroredY, 50, 60);
+            int mirroredY = 600 - renderY - 60;
+            return new Rectangle(renderX, mirroredY, 50, 60);
         }
 
         public String getName() { return name; }
         public int getHealth() { return health; }
+        public int getScore() { return score; }
     }
 
     // Représente un projectile envoyé par un joueur distant
@@ -123,10 +260,63 @@ public class ClientManager {
         public void setActive(boolean active) { this.active = active; }
     }
 
+    // Ennemi ou projectile simulé par le serveur ; sa position se déduit de l'heure du serveur
+    public static class RemoteEntity {
+        private final int kind;
+        private final boolean own;
+        private final int x, y, vy;
+        private final long spawnTime;
+        private final Enemy enemy;
+        private int health;
+        private int renderY;
+
+        // own : projectile tiré par le joueur local, affiché dans son propre repère
+        public RemoteEntity(GameMessage.EntityState state, boolean own) {
+            this.kind = state.getKind();
+            this.own = own;
+            this.x = state.getX();
+            this.y = state.getY();
+            this.vy = state.getVy();
+            this.spawnTime = state.getSpawnTime();
+            this.health = state.getHealth();
+            this.renderY = y;
+            this.enemy = kind == GameMessage.KIND_PROJECTILE ? null : new Enemy(x, y, 0, kind);
+            if (enemy != null) {
+                enemy.setHealth(health);
+            }
+        }
+
+        // Calcule la position à serverTime ; false une fois l'entité sortie de l'écran
+        public boolean update(long serverTime) {
+            int worldY = (int) Math.round(y + vy * Math.max(0, serverTime - spawnTime) / 1000.0);
+            if (enemy != null) {
+                renderY = worldY;
+                enemy.moveTo(x, worldY);
+                enemy.setHealth(health);
+                return worldY <= 600;
+            }
+            // Les projectiles adverses descendent depuis le haut de l'écran (effet versus)
+            renderY = own ? worldY : 600 - worldY - 15;
+            return worldY >= 0;
+        }
+
+        public void setHealth(int health) {
+            this.health = health;
+        }
+
+        public void draw(Graphics g) {
+            if (enemy != null) {
+                enemy.draw(g);
+            } else {
+                g.setColor(own ? Color.YELLOW : Color.CYAN);
+                g.fillRect(x, renderY, 5, 15);
+            }
+        }
+    }
+
     public ClientManager(String playerName, int shipType) {
         this.playerName = playerName;
         this.shipType = shipType;
-        this.matchId = GestionBaseDonnees.getNextMatchId();
     }
 
     public void setGamePanel(Bouclejeu gamePanel) {
@@ -135,120 +325,102 @@ public class ClientManager {
 
     public boolean connectToServer(String serverAddress) {
         try {
-            socket = new Socket(serverAddress, 5555);
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
+            forceKeyframe = true;
+            LoopbackConnection local = isLocalAddress(serverAddress) ? Server.openLoopback(SERVER_PORT) : null;
+            if (local != null) {
+                loopback = local;
+            } else {
+                socket = new Socket(serverAddress, SERVER_PORT);
+                socket.setTcpNoDelay(true);
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            }
 
             // Envoyer les infos du joueur au serveur
             GameMessage joinMessage = GameMessage.createJoinMessage(playerName, shipType, matchId);
-            out.writeObject(joinMessage);
-            out.flush();
+            send(joinMessage);
 
             // Attendre la réponse du serveur
-            GameMessage response = (GameMessage) in.readObject();
+            GameMessage response = receive();
             if (response.getChatContent().equals("NAME_ACCEPTED")) {
                 connected = true;
+                // Suit immédiatement : la partie attribuée et la session UDP
+                onMessage(receive(), tcpEvents, true);
 
                 // Démarrer un thread pour écouter les messages du serveur
                 listenerThread = new Thread(this::listenForMessages);
                 listenerThread.setDaemon(true);
                 listenerThread.start();
 
-                System.out.println("Successfully connected to server as " + playerName);
+                Thread clockThread = new Thread(this::runClockSync, "clock-sync");
+                clockThread.setDaemon(true);
+                clockThread.start();
+
+                System.out.println("Successfully connected to server as " + playerName + (local != null ? " (loopback)" : ""));
                 return true;
             } else {
                 System.out.println("Connection failed: Name already exists or server error");
                 closeConnection();
                 return false;
             }
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             System.err.println("Connection error: " + e.getMessage());
             closeConnection();
             return false;
         }
     }
 
+    // Seul le serveur de ce processus est joignable par la boucle locale
+    private static boolean isLocalAddress(String serverAddress) {
+        try {
+            return InetAddress.getByName(serverAddress).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    // Prochain message du serveur, depuis la file en mémoire en boucle locale, sinon depuis le socket
+    private GameMessage receive() throws IOException {
+        LoopbackConnection local = loopback;
+        if (local == null) {
+            return MessageCodec.read(in, stats);
+        }
+        try {
+            GameMessage message = local.take();
+            if (message == null) {
+                throw new EOFException("Loopback closed");
+            }
+            stats.recordIn(message.getType(), 0);
+            return message;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the server");
+        }
+    }
+
     private void listenForMessages() {
         try {
             while (connected) {
                 try {
-                    GameMessage message = (GameMessage) in.readObject();
+                    GameMessage message = receive();
                     if (message == null) {
                         System.err.println("Received null message from server");
                         break;
                     }
 
-                    switch (message.getType()) {
-                        case PLAYER_JOIN:
-                            String newPlayerName = message.getPlayerName();
-                            if (!newPlayerName.equals(playerName)) {
-                                onlinePlayers.add(newPlayerName);
-                                remotePlayers.put(newPlayerName, new RemotePlayer(newPlayerName, message.getShipType()));
-                            }
-                            break;
-
-                        case PLAYER_POSITION:
-                            String posPlayerName = message.getPlayerName();
-                            RemotePlayer player = remotePlayers.get(posPlayerName);
-                            if (player != null) {
-                                player.update(message.getX(), message.getY(), message.getHealth(), message.getScore());
-                                // If remote player died, check if we're the last one standing
-                                if (message.getHealth() <= 0 && gamePanel != null) {
-                                    boolean allOthersDead = true;
-                                    for (RemotePlayer otherPlayer : remotePlayers.values()) {
-                                        if (otherPlayer.getHealth() > 0) {
-                                            allOthersDead = false;
-                                            break;
-                                        }
-                                    }
-                                    if (allOthersDead) {
-                                        gamePanel.handleRemoteGameOver(true, message.getScore());
-                                    }
-                                }
-                            } else if (!posPlayerName.equals(playerName)) {
-                                remotePlayers.put(posPlayerName, new RemotePlayer(posPlayerName, 0));
-                                onlinePlayers.add(posPlayerName);
-                            }
-                            break;
-
-                        case PLAYER_SHOOT:
-                            if (!message.getPlayerName().equals(playerName)) {
-                                remoteProjectiles.add(new RemoteProjectile(
-                                        message.getProjectileX(), message.getProjectileY()));
-                            }
-                            break;
-
-                        case GAME_OVER:
-                            if (gamePanel != null) {
-                                gamePanel.handleRemoteGameOver(message.isWinner(),message.getScore());
-                            }
-                            break;
-
-                        case CHAT_MESSAGE:
-                            String chatMsg = message.getPlayerName() + ": " + message.getChatContent();
-                            addChatMessage(chatMsg);
-                            if (message.getPlayerName().equals("SYSTEM") &&
-                                    message.getChatContent().startsWith("Online players:")) {
-                                updateOnlinePlayers(message.getChatContent());
-                            }
-                            break;
-
-                        default:
-                            System.err.println("Unknown message type received: " + message.getType());
-                            break;
-                    }
+                    onMessage(message, tcpEvents, true);
                 } catch (EOFException e) {
                     System.err.println("Connection closed by server");
                     break;
                 } catch (SocketException e) {
                     System.err.println("Socket error: " + e.getMessage());
                     break;
+                } catch (ProtocolException e) {
+                    System.err.println("Invalid message format received: " + e.getMessage());
+                    break;
                 } catch (IOException e) {
                     System.err.println("IO error: " + e.getMessage());
                     break;
-                } catch (ClassNotFoundException e) {
-                    System.err.println("Invalid message format received");
-                    break;
                 }
             }
         } catch (Exception e) {
@@ -258,29 +430,353 @@ public class ClientManager {
         }
     }
 
-    private void updateOnlinePlayers(String message) {
-        String[] parts = message.split(":");
-        if (parts.length > 1) {
-            String[] players = parts[1].split(",");
-            for (String player : players) {
-                String trimmedPlayer = player.trim();
-                if (!trimmedPlayer.isEmpty() && !trimmedPlayer.equals(playerName)) {
-                    onlinePlayers.add(trimmedPlayer);
-                    // Si c'est un joueur qu'on ne connaît pas encore, on l'ajoute
-                    if (!remotePlayers.containsKey(trimmedPlayer)) {
-                        remotePlayers.put(trimmedPlayer, new RemotePlayer(trimmedPlayer, 0));
+    /*
+     * Thread d'écoute : horloge, PING et session sont traités à l'arrivée, le reste passe à la boucle de jeu.
+     * reliable : TCP attend que la boucle de jeu fasse de la place ; un datagramme est abandonné, comme
+     * s'il s'était perdu.
+     */
+    private void onMessage(GameMessage message, SpscQueue<GameMessage> events, boolean reliable) {
+        switch (message.getType()) {
+            case PONG:
+                clock.onPong(message.getClientTime(), message.getServerTime());
+                stats.recordRtt((ClockSync.localMillis() - message.getClientTime()) * 1000);
+                return;
+
+            case PING:
+                // Le serveur mesure aussi le RTT : on lui renvoie son heure telle quelle
+                try {
+                    send(GameMessage.createPongMessage(message.getClientTime(), ClockSync.localMillis()));
+                } catch (IOException e) {
+                    System.err.println("Error answering ping: " + e.getMessage());
+                }
+                return;
+
+            case JOIN_ACCEPTED:
+                matchId = message.getMatchId();
+                serverAuthoritative = message.getTickRate() > 0;
+                if (message.getUdpPort() > 0) {
+                    openUdpChannel(message.getSessionId(), message.getUdpPort());
+                }
+                return;
+
+            case GAME_STATE:
+            case MATCH_SNAPSHOT:
+                clock.onServerTime(message.getServerTime());
+                break;
+
+            default:
+                break;
+        }
+        while (!events.offer(message)) {
+            if (!reliable || !connected) {
+                return;
+            }
+            LockSupport.parkNanos(1_000_000);
+        }
+    }
+
+    // Boucle de jeu : applique les messages reçus depuis l'image précédente
+    public void processNetworkEvents() {
+        for (GameMessage message; (message = tcpEvents.poll()) != null; ) {
+            apply(message);
+        }
+        for (GameMessage message; (message = udpEvents.poll()) != null; ) {
+            apply(message);
+        }
+    }
+
+    private void apply(GameMessage message) {
+        switch (message.getType()) {
+            case ROSTER_UPDATE:
+                applyRoster(message);
+                break;
+
+            case MATCH_SNAPSHOT:
+                applySnapshot(message);
+                break;
+
+            case PLAYER_POSITION:
+                applyRemoteState(clock.serverNow(), message.getPlayerName(), message.getFields(), message.getX(),
+                        message.getY(), message.getHealth(), message.getScore());
+                break;
+
+            case GAME_STATE:
+                long serverTime = message.getServerTime();
+                // Les joueurs absents du delta n'ont pas bougé à cet instant
+                for (RemotePlayer remotePlayer : remotePlayers.values()) {
+                    remotePlayer.touch(serverTime);
+                }
+                for (GameMessage.PlayerState state : message.getPlayerStates()) {
+                    applyRemoteState(serverTime, state.getName(), state.getFields(), state.getX(),
+                            state.getY(), state.getHealth(), state.getScore());
+                }
+                break;
+
+            case PLAYER_SHOOT:
+                if (!message.getPlayerName().equals(playerName)) {
+                    remoteProjectiles.add(new RemoteProjectile(
+                            message.getProjectileX(), message.getProjectileY()));
+                }
+                break;
+
+            case ENEMY_UPDATE:
+                for (GameMessage.EntityState state : message.getEntityStates()) {
+                    RemoteEntity known = remoteEntities.get(state.getId());
+                    if (known != null) {
+                        known.setHealth(state.getHealth());
+                    } else {
+                        remoteEntities.put(state.getId(),
+                                new RemoteEntity(state, playerName.equals(state.getOwner())));
                     }
                 }
+                for (int id : message.getRemovedIds()) {
+                    remoteEntities.remove(id);
+                }
+                break;
+
+            case GAME_OVER:
+                if (gamePanel != null) {
+                    gamePanel.handleRemoteGameOver(message.isWinner(),message.getScore());
+                }
+                break;
+
+            case CHAT_MESSAGE:
+                String chatMsg = message.getPlayerName() + ": " + message.getChatContent();
+                addChatMessage(chatMsg);
+                break;
+
+            default:
+                System.err.println("Unknown message type received: " + message.getType());
+                break;
+        }
+    }
+
+    // Échanges PING/PONG pour estimer l'horloge du serveur : quelques-uns rapprochés, puis un par seconde
+    private void runClockSync() {
+        try {
+            for (int i = 0; connected; i++) {
+                send(GameMessage.createPingMessage(ClockSync.localMillis()));
+                Thread.sleep(i < 5 ? 200 : 1000);
             }
+        } catch (IOException e) {
+            System.err.println("Clock sync stopped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void openUdpChannel(int sessionId, int port) {
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.connect(new InetSocketAddress(socket.getInetAddress(), port));
+            udpSessionId = sessionId;
+            udpChannel = channel;
+            // La prochaine position complète part aussi en UDP et fait connaître notre adresse au serveur
+            forceKeyframe = true;
+            Thread udpListener = new Thread(this::listenForDatagrams, "udp-listener");
+            udpListener.setDaemon(true);
+            udpListener.start();
+        } catch (IOException e) {
+            System.err.println("UDP unavailable, staying on TCP: " + e.getMessage());
+        }
+    }
+
+    private void listenForDatagrams() {
+        ByteBuffer buffer = ByteBuffer.allocate(MessageCodec.MAX_DATAGRAM_SIZE);
+        DatagramChannel channel = udpChannel;
+        while (connected) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                int size = buffer.remaining();
+                if (buffer.remaining() < MessageCodec.DATAGRAM_HEADER || buffer.getInt() != udpSessionId) {
+                    continue;
+                }
+                int seq = buffer.getInt();
+                if (udpReceived && seq - udpLastSeqIn <= 0) {
+                    // Datagramme en retard : un état plus récent a déjà été appliqué
+                    continue;
+                }
+                GameMessage message = MessageCodec.decodeDatagramFrame(buffer);
+                udpReceived = true;
+                udpLastSeqIn = seq;
+                udpConfirmed = true;
+                stats.recordIn(message.getType(), size);
+                onMessage(message, udpEvents, false);
+            } catch (ProtocolException e) {
+                System.err.println("Invalid datagram received: " + e.getMessage());
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                // Port UDP injoignable ou filtré : tout reste sur TCP
+                System.err.println("UDP error, staying on TCP: " + e.getMessage());
+                udpConfirmed = false;
+                break;
+            }
+        }
+    }
+
+    private void applyRemoteState(long serverTime, String posPlayerName, int fields, int x, int y, int health, int score) {
+        RemotePlayer player = remotePlayers.get(posPlayerName);
+        if (player != null) {
+            boolean wasAlive = player.getHealth() > 0;
+            player.update(serverTime, fields, x, y, health, score);
+            // If remote player died, check if we're the last one standing
+            if (wasAlive && player.getHealth() <= 0 && gamePanel != null) {
+                boolean allOthersDead = true;
+                for (RemotePlayer otherPlayer : remotePlayers.values()) {
+                    if (otherPlayer.getHealth() > 0) {
+                        allOthersDead = false;
+                        break;
+                    }
+                }
+                if (allOthersDead) {
+                    gamePanel.handleRemoteGameOver(true, player.getScore());
+                }
+            }
+        } else if (posPlayerName.equals(playerName)) {
+            // Notre propre entrée : vie et score tels que le serveur les a décidés
+            if (gamePanel != null) {
+                gamePanel.applyServerState(fields, health, score);
+            }
+        } else {
+            RemotePlayer newPlayer = new RemotePlayer(posPlayerName, 0);
+            newPlayer.update(serverTime, fields, x, y, health, score);
+            remotePlayers.put(posPlayerName, newPlayer);
+            onlinePlayers.add(posPlayerName);
+        }
+    }
+
+    // Appliqué seulement dans l'ordre des versions ; un trou fait redemander la liste complète
+    private void applyRoster(GameMessage message) {
+        int version = message.getRosterVersion();
+        int op = message.getRosterOp();
+        if (op == GameMessage.ROSTER_FULL) {
+            replaceRoster(version, message.getRosterEntries());
+            return;
+        }
+        if (rosterVersion < 0) {
+            // Avant l'instantané d'arrivée, qui couvre déjà ce changement
+            return;
+        }
+        if (version == rosterVersion + 1) {
+            for (GameMessage.RosterEntry entry : message.getRosterEntries()) {
+                if (op == GameMessage.ROSTER_REMOVE) {
+                    onlinePlayers.remove(entry.getName());
+                    remotePlayers.remove(entry.getName());
+                } else {
+                    addRosterEntry(entry);
+                }
+            }
+        } else {
+            if (version > rosterVersion && !rosterResyncPending) {
+                rosterResyncPending = true;
+                try {
+                    send(GameMessage.createRosterRequestMessage(rosterVersion, matchId));
+                } catch (IOException e) {
+                    System.err.println("Error requesting roster: " + e.getMessage());
+                }
+            }
+            return;
+        }
+        rosterVersion = version;
+    }
+
+    private void replaceRoster(int version, List<GameMessage.RosterEntry> entries) {
+        if (version < rosterVersion) {
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        for (GameMessage.RosterEntry entry : entries) {
+            names.add(entry.getName());
+            addRosterEntry(entry);
+        }
+        onlinePlayers.retainAll(names);
+        remotePlayers.keySet().retainAll(names);
+        rosterVersion = version;
+        rosterResyncPending = false;
+    }
+
+    // État complet de la partie à l'arrivée : joueurs, positions, vie, scores, ennemis et projectiles
+    private void applySnapshot(GameMessage message) {
+        long serverTime = message.getServerTime();
+        replaceRoster(message.getRosterVersion(), message.getRosterEntries());
+        for (GameMessage.PlayerState state : message.getPlayerStates()) {
+            applyRemoteState(serverTime, state.getName(), state.getFields(), state.getX(), state.getY(),
+                    state.getHealth(), state.getScore());
+        }
+        remoteEntities.clear();
+        for (GameMessage.EntityState state : message.getEntityStates()) {
+            remoteEntities.put(state.getId(), new RemoteEntity(state, playerName.equals(state.getOwner())));
+        }
+    }
+
+    private void addRosterEntry(GameMessage.RosterEntry entry) {
+        String name = entry.getName();
+        if (!name.equals(playerName)) {
+            onlinePlayers.add(name);
+            remotePlayers.computeIfAbsent(name, n -> new RemotePlayer(n, entry.getShipType()));
         }
     }
 
+    // N'envoie que les champs modifiés depuis le dernier envoi, et rien si le joueur est immobile ;
+    // une position complète part toutes les KEYFRAME_INTERVAL_MS
     public void sendPosition(int x, int y, int health, int score) {
-        if (connected && out != null) {
+        if (canSend()) {
             try {
-                GameMessage posMsg = GameMessage.createPositionMessage(playerName, x, y, health, score, matchId);
-                out.writeObject(posMsg);
-                out.flush();
+                long now = ClockSync.localMillis();
+                boolean overUdp = udpConfirmed;
+                int changed = 0;
+                if (x != sentX) changed |= GameMessage.FIELD_X;
+                if (y != sentY) changed |= GameMessage.FIELD_Y;
+                if (health != sentHealth) changed |= GameMessage.FIELD_HEALTH;
+                if (score != sentScore) changed |= GameMessage.FIELD_SCORE;
+
+                boolean keyframe = forceKeyframe || now - lastKeyframeTime >= KEYFRAME_INTERVAL_MS;
+                // Vie et score partent tout de suite ; un déplacement attend l'intervalle et s'accumule
+                boolean due = now - lastPositionSend >= POSITION_SEND_INTERVAL_MS
+                        || (changed & (GameMessage.FIELD_HEALTH | GameMessage.FIELD_SCORE)) != 0;
+                if (!keyframe && !due) {
+                    return;
+                }
+
+                int fields = 0;
+                if (changed != 0) {
+                    recentFields = (repeatsLeft > 0 ? recentFields : 0) | changed;
+                    repeatsLeft = UDP_REDUNDANCY;
+                    fields = overUdp ? recentFields : changed;
+                } else if (overUdp && repeatsLeft > 0) {
+                    repeatsLeft--;
+                    fields = recentFields;
+                }
+                if (keyframe) {
+                    fields = GameMessage.ALL_FIELDS;
+                    forceKeyframe = false;
+                    lastKeyframeTime = now;
+                }
+                if (fields == 0) {
+                    return;
+                }
+
+                GameMessage posMsg = GameMessage.createPositionDelta(playerName, fields, x, y, health, score, matchId);
+                if (overUdp) {
+                    sendDatagram(posMsg);
+                } else {
+                    send(posMsg);
+                    if (keyframe && udpChannel != null) {
+                        try {
+                            sendDatagram(posMsg);
+                        } catch (IOException e) {
+                            // Chemin UDP indisponible : la position est déjà partie par TCP
+                        }
+                    }
+                }
+                lastPositionSend = now;
+                sentX = x;
+                sentY = y;
+                sentHealth = health;
+                sentScore = score;
             } catch (IOException e) {
                 System.err.println("Error sending position: " + e.getMessage());
             }
@@ -288,11 +784,14 @@ public class ClientManager {
     }
 
     public void sendProjectile(int x, int y) {
-        if (connected && out != null) {
+        if (canSend()) {
             try {
                 GameMessage shootMsg = GameMessage.createShootMessage(playerName, x, y, matchId);
-                out.writeObject(shootMsg);
-                out.flush();
+                if (udpConfirmed) {
+                    sendDatagram(shootMsg);
+                } else {
+                    send(shootMsg);
+                }
             } catch (IOException e) {
                 System.err.println("Error sending projectile: " + e.getMessage());
             }
@@ -300,11 +799,10 @@ public class ClientManager {
     }
 
     public void sendChatMessage(String content) {
-        if (connected && out != null) {
+        if (canSend()) {
             try {
                 GameMessage chatMsg = GameMessage.createChatMessage(playerName, content, matchId);
-                out.writeObject(chatMsg);
-                out.flush();
+                send(chatMsg);
             } catch (IOException e) {
                 System.err.println("Error sending chat message: " + e.getMessage());
             }
@@ -312,11 +810,10 @@ public class ClientManager {
     }
 
     public void sendHitMessage(String targetPlayerName) {
-        if (connected && out != null) {
+        if (canSend()) {
             try {
                 GameMessage hitMsg = GameMessage.createHitMessage(targetPlayerName, matchId);
-                out.writeObject(hitMsg);
-                out.flush();
+                send(hitMsg);
             } catch (IOException e) {
                 System.err.println("Error sending hit message: " + e.getMessage());
             }
@@ -324,19 +821,51 @@ public class ClientManager {
     }
 
     public void sendGameOver(boolean isWinner) {
-        if (connected && out != null) {
+        if (canSend()) {
             try {
                 // Get the current score from the game panel
                 int finalScore = gamePanel != null ? gamePanel.getScore() : 0;
                 GameMessage gameOverMsg = GameMessage.createGameOverMessage(playerName, isWinner, finalScore, matchId);
-                out.writeObject(gameOverMsg);
-                out.flush();
+                send(gameOverMsg);
             } catch (IOException e) {
                 System.err.println("Error sending game over message: " + e.getMessage());
             }
         }
     }
 
+    private synchronized void send(GameMessage message) throws IOException {
+        LoopbackConnection local = loopback;
+        if (local != null) {
+            stats.recordOut(message.getType(), 0);
+            local.deliver(message);
+            return;
+        }
+        DataOutputStream stream = out;
+        if (stream == null) {
+            throw new SocketException("Not connected");
+        }
+        stats.recordOut(message.getType(), MessageCodec.write(stream, message));
+        stream.flush();
+    }
+
+    private synchronized void sendDatagram(GameMessage message) throws IOException {
+        DatagramChannel channel = udpChannel;
+        if (channel == null) {
+            throw new SocketException("UDP not connected");
+        }
+        if (!MessageCodec.encodeDatagram(udpSessionId, ++udpSeqOut, message, udpSendBuffer)) {
+            send(message);
+            return;
+        }
+        int size = udpSendBuffer.remaining();
+        channel.write(udpSendBuffer);
+        stats.recordOut(message.getType(), size);
+    }
+
+    private boolean canSend() {
+        return connected && (out != null || loopback != null);
+    }
+
     public void disconnect() {
         if (connected) {
             closeConnection();
@@ -345,6 +874,10 @@ public class ClientManager {
 
     private void closeConnection() {
         connected = false;
+        LoopbackConnection local = loopback;
+        if (local != null) {
+            local.disconnect();
+        }
         try {
             if (socket != null && !socket.isClosed()) {
                 socket.close();
@@ -352,6 +885,16 @@ public class ClientManager {
         } catch (IOException e) {
             System.err.println("Error closing socket: " + e.getMessage());
         }
+        try {
+            if (udpChannel != null) {
+                udpChannel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing UDP channel: " + e.getMessage());
+        }
+        udpChannel = null;
+        udpConfirmed = false;
+        loopback = null;
         socket = null;
         out = null;
         in = null;
@@ -368,8 +911,9 @@ public class ClientManager {
         return new ArrayList<>(chatMessages);
     }
 
+    // Vues sur l'état de la partie, à lire depuis la boucle de jeu ou l'affichage (thread Swing)
     public Set<String> getOnlinePlayers() {
-        return new HashSet<>(onlinePlayers);
+        return Collections.unmodifiableSet(onlinePlayers);
     }
 
     public Collection<RemotePlayer> getRemotePlayers() {
@@ -377,7 +921,25 @@ public class ClientManager {
     }
 
     public List<RemoteProjectile> getRemoteProjectiles() {
-        return new ArrayList<>(remoteProjectiles);
+        return remoteProjectiles;
+    }
+
+    // Positions affichées des joueurs distants, GameMessage.INTERPOLATION_DELAY_MS dans le passé du serveur
+    public void updateRemotePlayers() {
+        long renderTime = clock.serverNow() - GameMessage.INTERPOLATION_DELAY_MS;
+        for (RemotePlayer remotePlayer : remotePlayers.values()) {
+            remotePlayer.interpolate(renderTime);
+        }
+    }
+
+    public Collection<RemoteEntity> getRemoteEntities() {
+        return remoteEntities.values();
+    }
+
+    // Positions des ennemis et projectiles à l'heure actuelle du serveur : leur mouvement est connu d'avance
+    public void updateRemoteEntities() {
+        long serverTime = clock.serverNow();
+        remoteEntities.values().removeIf(entity -> !entity.update(serverTime));
     }
 
     public void updateRemoteProjectiles() {
@@ -387,6 +949,15 @@ public class ClientManager {
         }
     }
 
+    // Compteurs réseau et RTT de la connexion, affichés par le HUD de debug
+    public NetStats getStats() {
+        return stats;
+    }
+
+    public boolean isUdpConfirmed() {
+        return udpConfirmed;
+    }
+
     public boolean isConnected() {
         return connected;
     }
@@ -394,4 +965,8 @@ public class ClientManager {
     public int getMatchId() {
         return matchId;
     }
+
+    public boolean isServerAuthoritative() {
+        return serverAuthoritative;
+    }
 }
\ No newline at end of file
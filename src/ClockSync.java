@@ -0,0 +1,62 @@
+/**
+ * Estimation de l'horloge du serveur côté client, par échanges PING/PONG.
+ *
+ * Chaque échange donne un décalage serveur - client en supposant l'aller et le retour symétriques ;
+ * parmi les derniers échantillons on garde celui de plus petit aller-retour, le moins faussé par
+ * les files d'attente.
+ */
+class ClockSync {
+    private static final int SAMPLES = 8;
+
+    private final long[] offsets = new long[SAMPLES];
+    private final long[] rtts = new long[SAMPLES];
+    private int count;
+    private int next;
+    private volatile long offset;
+    private volatile long rtt = -1;
+    private boolean estimated;
+
+    // Horloge locale monotone, en millisecondes
+    static long localMillis() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    synchronized void onPong(long clientSendTime, long serverTime) {
+        long now = localMillis();
+        long sampleRtt = now - clientSendTime;
+        if (sampleRtt < 0) {
+            return;
+        }
+        offsets[next] = serverTime + sampleRtt / 2 - now;
+        rtts[next] = sampleRtt;
+        next = (next + 1) % SAMPLES;
+        count = Math.min(count + 1, SAMPLES);
+
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (rtts[i] < rtts[best]) {
+                best = i;
+            }
+        }
+        offset = offsets[best];
+        rtt = rtts[best];
+    }
+
+    // Avant le premier PONG, un GAME_STATE reçu donne une première estimation (latence supposée nulle)
+    synchronized void onServerTime(long serverTime) {
+        long lowerBound = serverTime - localMillis();
+        if (rtt < 0 && (!estimated || lowerBound > offset)) {
+            offset = lowerBound;
+            estimated = true;
+        }
+    }
+
+    long serverNow() {
+        return localMillis() + offset;
+    }
+
+    // Aller-retour du meilleur échantillon, -1 avant le premier PONG
+    long getRtt() {
+        return rtt;
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dernier état de chaque joueur transmis à un destinataire, pour ne lui envoyer que les champs modifiés.
+ *
+ * Sur TCP, tout message accepté par la file d'envoi arrive dans l'ordre et les fusions de la file
+ * gardent l'union des champs : l'état envoyé est donc celui que le client aura appliqué.
+ * Sur UDP un datagramme peut se perdre : chaque champ modifié est répété pendant {@code redundancy}
+ * ticks supplémentaires, puis l'image clé complète tous les {@code keyframeInterval} ticks resynchronise.
+ */
+class DeltaBaseline {
+    private final Map<String, Sent> lastSent = new HashMap<>();
+    private int lastKeyframeTick;
+    private boolean hasKeyframe;
+
+    private static class Sent {
+        int x, y, health, score;
+        // Champs modifiés récemment, encore répétés pendant repeatsLeft ticks
+        int recentFields;
+        int repeatsLeft;
+    }
+
+    List<GameMessage.PlayerState> diff(int tick, List<GameMessage.PlayerState> current, int keyframeInterval) {
+        return diff(tick, current, keyframeInterval, 0, null, true, null);
+    }
+
+    /*
+     * Entrées à envoyer pour ce tick ; vide si rien n'a changé et qu'aucune image clé n'est due.
+     * Si nearby n'est pas null, les joueurs absents de l'ensemble ne sont examinés que lorsque
+     * distantDue est vrai : leurs changements s'accumulent jusque-là (hors image clé).
+     * self est le destinataire : il décide lui-même de sa position, seuls sa vie et son score lui
+     * sont renvoyés hors image clé.
+     */
+    List<GameMessage.PlayerState> diff(int tick, List<GameMessage.PlayerState> current, int keyframeInterval,
+                                       int redundancy, Set<String> nearby, boolean distantDue, String self) {
+        boolean keyframe = !hasKeyframe || keyframeInterval <= 1 || tick - lastKeyframeTick >= keyframeInterval;
+        if (keyframe) {
+            hasKeyframe = true;
+            lastKeyframeTick = tick;
+        }
+
+        List<GameMessage.PlayerState> entries = new ArrayList<>();
+        for (GameMessage.PlayerState state : current) {
+            Sent sent = lastSent.get(state.getName());
+            if (sent != null && !keyframe && !distantDue && nearby != null && !nearby.contains(state.getName())) {
+                continue;
+            }
+            int fields;
+            if (sent == null) {
+                sent = new Sent();
+                lastSent.put(state.getName(), sent);
+                fields = GameMessage.ALL_FIELDS;
+            } else {
+                int changed = 0;
+                if (sent.x != state.getX()) changed |= GameMessage.FIELD_X;
+                if (sent.y != state.getY()) changed |= GameMessage.FIELD_Y;
+                if (sent.health != state.getHealth()) changed |= GameMessage.FIELD_HEALTH;
+                if (sent.score != state.getScore()) changed |= GameMessage.FIELD_SCORE;
+                if (state.getName().equals(self)) {
+                    changed &= ~(GameMessage.FIELD_X | GameMessage.FIELD_Y);
+                }
+                if (changed != 0) {
+                    sent.recentFields = (sent.repeatsLeft > 0 ? sent.recentFields : 0) | changed;
+                    sent.repeatsLeft = redundancy;
+                    fields = redundancy > 0 ? sent.recentFields : changed;
+                } else if (sent.repeatsLeft > 0) {
+                    sent.repeatsLeft--;
+                    fields = sent.recentFields;
+                } else {
+                    fields = 0;
+                }
+                if (keyframe) {
+                    fields = GameMessage.ALL_FIELDS;
+                }
+            }
+            if (fields == 0) {
+                continue;
+            }
+            entries.add(fields == GameMessage.ALL_FIELDS ? state : new GameMessage.PlayerState(state.getName(), fields,
+                    state.getX(), state.getY(), state.getHealth(), state.getScore()));
+            sent.x = state.getX();
+            sent.y = state.getY();
+            sent.health = state.getHealth();
+            sent.score = state.getScore();
+        }
+        return entries;
+    }
+
+    // Un joueur parti : s'il revient sous le même nom, il repart d'un état complet
+    void forget(String name) {
+        lastSent.remove(name);
+    }
+}
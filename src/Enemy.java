@@ -21,37 +21,39 @@ public class Enemy {
         this.type = type;
 
         switch(type) {
-            case 0: // Basic
-                this.image = GestionRessources.getImage("/enemy_basic.png");
-                this.width = 40;
-                this.height = 40;
-                this.speedY = baseSpeed;
-                this.health = 1;
-                break;
             case 1: // Fast
                 this.image = GestionRessources.getImage("/enemy_fast.png");
-                this.width = 30;
-                this.height = 30;
-                this.speedY = baseSpeed + 2;
-                this.health = 1;
                 break;
             case 2: // Tank
                 this.image = GestionRessources.getImage("/enemy_tank.png");
-                this.width = 50;
-                this.height = 50;
-                this.speedY = baseSpeed - 1;
-                this.health = 3;
                 break;
-            default:
+            default: // Basic
                 this.image = GestionRessources.getImage("/enemy_basic.png");
-                this.width = 40;
-                this.height = 40;
-                this.speedY = baseSpeed;
-                this.health = 1;
         }
+        this.width = sizeOf(type);
+        this.height = sizeOf(type);
+        this.speedY = speedOf(type, baseSpeed);
+        this.health = healthOf(type);
         this.maxHealth = health;
     }
 
+    // Caractéristiques de chaque type, partagées avec la simulation du serveur (sans image)
+    static int sizeOf(int type) {
+        return type == 1 ? 30 : type == 2 ? 50 : 40;
+    }
+
+    static int speedOf(int type, int baseSpeed) {
+        return type == 1 ? baseSpeed + 2 : type == 2 ? baseSpeed - 1 : baseSpeed;
+    }
+
+    static int healthOf(int type) {
+        return type == 2 ? 3 : 1;
+    }
+
+    static int pointsOf(int type) {
+        return type == 0 ? 10 : type == 1 ? 15 : 30;
+    }
+
     public void update(int scrollSpeed) {
         y += speedY + scrollSpeed;
     }
@@ -81,6 +83,17 @@ public class Enemy {
         }
     }
 
+    // Position et vie dictées par le serveur en multijoueur
+    public void moveTo(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public void setHealth(int health) {
+        this.health = health;
+        this.alive = health > 0;
+    }
+
     public Rectangle getHitbox() {
         return new Rectangle(x, y, width, height);
     }
@@ -195,7 +195,7 @@ public class FenetreJeu extends JFrame {
             hostButton.addActionListener(e -> {
                 parent.startMultiplayerServer();
                 // On ne démarre pas le jeu tout de suite, le joueur devra cliquer sur "Rejoindre"
-                // avec "localhost" comme adresse de serveur
+                // avec "localhost" comme adresse de serveur (boucle locale en mémoire, voir LoopbackConnection)
             });
 
             // Bouton pour revenir au menu principal
@@ -1,4 +1,9 @@
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class GameMessage implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -12,7 +17,131 @@ public class GameMessage implements Serializable {
         CHAT_MESSAGE,
         PLAYER_JOIN,
         PLAYER_LEAVE,
-        GAME_OVER
+        GAME_OVER,
+        JOIN_ACCEPTED,
+        PING,
+        PONG,
+        ROSTER_UPDATE,
+        MATCH_SNAPSHOT
+    }
+
+    // Champs présents dans une mise à jour d'état (PLAYER_POSITION ou entrée de GAME_STATE)
+    public static final int FIELD_X = 1;
+    public static final int FIELD_Y = 1 << 1;
+    public static final int FIELD_HEALTH = 1 << 2;
+    public static final int FIELD_SCORE = 1 << 3;
+    public static final int ALL_FIELDS = FIELD_X | FIELD_Y | FIELD_HEALTH | FIELD_SCORE;
+
+    // Les clients affichent les joueurs distants avec ce retard, pour toujours avoir deux instantanés à
+    // interpoler ; le serveur en tient compte pour juger les tirs (compensation de latence)
+    public static final long INTERPOLATION_DELAY_MS = 100;
+
+    // État d'un joueur dans un instantané GAME_STATE ; seuls les champs de getFields() sont significatifs
+    public static class PlayerState implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final int fields;
+        private final int x;
+        private final int y;
+        private final int health;
+        private final int score;
+
+        public PlayerState(String name, int x, int y, int health, int score) {
+            this(name, ALL_FIELDS, x, y, health, score);
+        }
+
+        public PlayerState(String name, int fields, int x, int y, int health, int score) {
+            this.name = name;
+            this.fields = fields;
+            this.x = x;
+            this.y = y;
+            this.health = health;
+            this.score = score;
+        }
+
+        // Union de deux deltas successifs : les champs du plus récent l'emportent
+        static PlayerState merge(PlayerState older, PlayerState newer) {
+            int fields = newer.fields;
+            return new PlayerState(newer.name, older.fields | fields,
+                    (fields & FIELD_X) != 0 ? newer.x : older.x,
+                    (fields & FIELD_Y) != 0 ? newer.y : older.y,
+                    (fields & FIELD_HEALTH) != 0 ? newer.health : older.health,
+                    (fields & FIELD_SCORE) != 0 ? newer.score : older.score);
+        }
+
+        public String getName() { return name; }
+        public int getFields() { return fields; }
+        public int getX() { return x; }
+        public int getY() { return y; }
+        public int getHealth() { return health; }
+        public int getScore() { return score; }
+    }
+
+    // Types d'entités simulées par le serveur : 0 à 2 sont les types d'ennemis (voir Enemy)
+    public static final int KIND_PROJECTILE = 3;
+
+    /*
+     * Ennemi ou projectile d'un ENEMY_UPDATE. Le mouvement est rectiligne : la position à l'instant t
+     * vaut (x, y + vy * (t - spawnTime) / 1000), le client la recalcule sans autre message.
+     * Un projectile est exprimé dans le repère de son tireur (owner).
+     */
+    public static class EntityState implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int id;
+        private final int kind;
+        private final String owner;
+        private final int x;
+        private final int y;
+        private final int vy;
+        private final long spawnTime;
+        private final int health;
+
+        public EntityState(int id, int kind, String owner, int x, int y, int vy, long spawnTime, int health) {
+            this.id = id;
+            this.kind = kind;
+            this.owner = owner;
+            this.x = x;
+            this.y = y;
+            this.vy = vy;
+            this.spawnTime = spawnTime;
+            this.health = health;
+        }
+
+        public int getId() { return id; }
+        public int getKind() { return kind; }
+        public String getOwner() { return owner; }
+        public int getX() { return x; }
+        public int getY() { return y; }
+        public int getVy() { return vy; }
+        public long getSpawnTime() { return spawnTime; }
+        public int getHealth() { return health; }
+    }
+
+    // Opérations d'un ROSTER_UPDATE : liste complète, puis arrivée, départ ou changement d'un joueur
+    public static final int ROSTER_FULL = 0;
+    public static final int ROSTER_ADD = 1;
+    public static final int ROSTER_REMOVE = 2;
+    public static final int ROSTER_CHANGE = 3;
+
+    // Joueur d'un ROSTER_UPDATE ; pour un départ seul le nom compte
+    public static class RosterEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final int shipType;
+        private final boolean alive;
+
+        public RosterEntry(String name, int shipType, boolean alive) {
+            this.name = name;
+            this.shipType = shipType;
+            this.alive = alive;
+        }
+
+        public String getName() { return name; }
+        public int getShipType() { return shipType; }
+        public boolean isAlive() { return alive; }
     }
 
     private final MessageType type;
@@ -27,15 +156,39 @@ public class GameMessage implements Serializable {
     private String chatContent;
     private boolean isWinner;
     private int matchId;
+    private int fields;
+    private int sessionId;
+    private int udpPort;
+    // Fréquence de simulation du serveur (JOIN_ACCEPTED) ; 0 : il ne fait que relayer tirs et touches
+    private int tickRate;
+    private long clientTime;
+    private long serverTime;
+    private int tick;
+    // Listes transmises par MessageCodec seulement ; la sérialisation Java ne sert plus qu'à la comparaison
+    // de NetworkBenchmark codec, sur des messages qui n'en ont pas
+    private transient List<PlayerState> playerStates;
+    private transient List<EntityState> entityStates;
+    private transient List<Integer> removedIds;
+    private int rosterVersion;
+    private int rosterOp;
+    private transient List<RosterEntry> rosterEntries;
+    // Trame encodée une seule fois pour une diffusion et recopiée pour chaque destinataire (MessageCodec.share)
+    private transient volatile ByteBuffer sharedFrame;
 
     private GameMessage(MessageType type) {
         this.type = type;
     }
 
-    // Constructeur pour position joueur
+    // Constructeur pour position joueur (image clé : tous les champs)
     public static GameMessage createPositionMessage(String playerName, int x, int y, int health, int score, int matchId) {
+        return createPositionDelta(playerName, ALL_FIELDS, x, y, health, score, matchId);
+    }
+
+    // Constructeur pour position joueur ne portant que les champs modifiés
+    public static GameMessage createPositionDelta(String playerName, int fields, int x, int y, int health, int score, int matchId) {
         GameMessage msg = new GameMessage(MessageType.PLAYER_POSITION);
         msg.playerName = playerName;
+        msg.fields = fields;
         msg.x = x;
         msg.y = y;
         msg.health = health;
@@ -89,6 +242,135 @@ public class GameMessage implements Serializable {
         return msg;
     }
 
+    // Partie attribuée par le serveur et session UDP proposée ; udpPort vaut 0 si le serveur n'a pas de canal UDP
+    public static GameMessage createJoinAcceptedMessage(int sessionId, int udpPort, int matchId, int tickRate) {
+        GameMessage msg = new GameMessage(MessageType.JOIN_ACCEPTED);
+        msg.sessionId = sessionId;
+        msg.udpPort = udpPort;
+        msg.matchId = matchId;
+        msg.tickRate = tickRate;
+        return msg;
+    }
+
+    // Synchronisation d'horloge : le client envoie son heure, le serveur la renvoie avec la sienne
+    public static GameMessage createPingMessage(long clientTime) {
+        GameMessage msg = new GameMessage(MessageType.PING);
+        msg.clientTime = clientTime;
+        return msg;
+    }
+
+    public static GameMessage createPongMessage(long clientTime, long serverTime) {
+        GameMessage msg = new GameMessage(MessageType.PONG);
+        msg.clientTime = clientTime;
+        msg.serverTime = serverTime;
+        return msg;
+    }
+
+    // Constructeur pour l'instantané périodique de l'état des joueurs, horodaté à l'heure du serveur
+    public static GameMessage createGameStateMessage(int tick, long serverTime, List<PlayerState> playerStates, int matchId) {
+        GameMessage msg = new GameMessage(MessageType.GAME_STATE);
+        msg.tick = tick;
+        msg.serverTime = serverTime;
+        msg.playerStates = List.copyOf(playerStates);
+        msg.matchId = matchId;
+        return msg;
+    }
+
+    // Entités apparues ou endommagées depuis le dernier tick, et entités détruites
+    public static GameMessage createEnemyUpdateMessage(int tick, long serverTime, List<EntityState> entityStates,
+                                                       List<Integer> removedIds, int matchId) {
+        GameMessage msg = new GameMessage(MessageType.ENEMY_UPDATE);
+        msg.tick = tick;
+        msg.serverTime = serverTime;
+        msg.entityStates = List.copyOf(entityStates);
+        msg.removedIds = List.copyOf(removedIds);
+        msg.matchId = matchId;
+        return msg;
+    }
+
+    /*
+     * Changement de la liste des joueurs d'une partie. Chaque changement incrémente la version : un client
+     * qui reçoit autre chose que sa version + 1 a manqué un changement et redemande la liste complète.
+     */
+    public static GameMessage createRosterMessage(int version, int op, List<RosterEntry> entries, int matchId) {
+        GameMessage msg = new GameMessage(MessageType.ROSTER_UPDATE);
+        msg.rosterVersion = version;
+        msg.rosterOp = op;
+        msg.rosterEntries = List.copyOf(entries);
+        msg.matchId = matchId;
+        return msg;
+    }
+
+    // Demande du client : liste complète, en indiquant la dernière version reçue
+    public static GameMessage createRosterRequestMessage(int knownVersion, int matchId) {
+        return createRosterMessage(knownVersion, ROSTER_FULL, List.of(), matchId);
+    }
+
+    /*
+     * Tout l'état d'une partie en un message, pour un joueur qui arrive : liste des joueurs, leur état
+     * complet (même ordre que la liste) et les entités vivantes. Les deltas habituels prennent le relais.
+     */
+    public static GameMessage createMatchSnapshotMessage(int tick, long serverTime, int rosterVersion,
+                                                         List<RosterEntry> rosterEntries, List<PlayerState> playerStates,
+                                                         List<EntityState> entityStates, int matchId) {
+        if (rosterEntries.size() != playerStates.size()) {
+            throw new IllegalArgumentException("Roster and player states differ in size");
+        }
+        GameMessage msg = new GameMessage(MessageType.MATCH_SNAPSHOT);
+        msg.tick = tick;
+        msg.serverTime = serverTime;
+        msg.rosterVersion = rosterVersion;
+        msg.rosterOp = ROSTER_FULL;
+        msg.rosterEntries = List.copyOf(rosterEntries);
+        msg.playerStates = List.copyOf(playerStates);
+        msg.entityStates = List.copyOf(entityStates);
+        msg.matchId = matchId;
+        return msg;
+    }
+
+    /*
+     * Fusionne deux mises à jour d'état en attente pour le même destinataire, sans perdre de champ :
+     * un delta remplacé par un autre n'aurait plus les champs que seul le premier portait.
+     */
+    static GameMessage coalesce(GameMessage older, GameMessage newer) {
+        switch (newer.type) {
+            case PLAYER_POSITION: {
+                PlayerState merged = PlayerState.merge(
+                        new PlayerState(older.playerName, older.fields, older.x, older.y, older.health, older.score),
+                        new PlayerState(newer.playerName, newer.fields, newer.x, newer.y, newer.health, newer.score));
+                return createPositionDelta(merged.name, merged.fields, merged.x, merged.y,
+                        merged.health, merged.score, newer.matchId);
+            }
+            case GAME_STATE: {
+                Map<String, PlayerState> byName = new LinkedHashMap<>();
+                for (PlayerState state : older.playerStates) {
+                    byName.put(state.name, state);
+                }
+                for (PlayerState state : newer.playerStates) {
+                    byName.merge(state.name, state, PlayerState::merge);
+                }
+                return createGameStateMessage(newer.tick, newer.serverTime, new ArrayList<>(byName.values()), newer.matchId);
+            }
+            case ENEMY_UPDATE: {
+                // Les identifiants ne sont jamais réutilisés : une entité détruite entre-temps n'a plus à être envoyée
+                Map<Integer, EntityState> byId = new LinkedHashMap<>();
+                for (EntityState state : older.entityStates) {
+                    byId.put(state.id, state);
+                }
+                for (EntityState state : newer.entityStates) {
+                    byId.put(state.id, state);
+                }
+                List<Integer> removed = new ArrayList<>(older.removedIds);
+                removed.addAll(newer.removedIds);
+                byId.keySet().removeAll(removed);
+                return createEnemyUpdateMessage(newer.tick, newer.serverTime, new ArrayList<>(byId.values()),
+                        removed, newer.matchId);
+            }
+            default:
+                return newer;
+        }
+    }
+
     // Getters
     public MessageType getType() { return type; }
     public String getPlayerName() { return playerName; }
@@ -102,4 +384,20 @@ public class GameMessage implements Serializable {
     public int getShipType() { return shipType; }
     public boolean isWinner() { return isWinner; }
     public int getMatchId() { return matchId; }
+    public int getFields() { return fields; }
+    public int getSessionId() { return sessionId; }
+    public int getUdpPort() { return udpPort; }
+    public int getTickRate() { return tickRate; }
+    public long getClientTime() { return clientTime; }
+    public long getServerTime() { return serverTime; }
+    public int getTick() { return tick; }
+    public List<PlayerState> getPlayerStates() { return playerStates; }
+    public List<EntityState> getEntityStates() { return entityStates; }
+    public List<Integer> getRemovedIds() { return removedIds; }
+    public int getRosterVersion() { return rosterVersion; }
+    public int getRosterOp() { return rosterOp; }
+    public List<RosterEntry> getRosterEntries() { return rosterEntries; }
+
+    ByteBuffer getSharedFrame() { return sharedFrame; }
+    void setSharedFrame(ByteBuffer sharedFrame) { this.sharedFrame = sharedFrame; }
 }
\ No newline at end of file
@@ -35,9 +35,25 @@ public class GestionBaseDonnees {
                 CREATE TABLE IF NOT EXISTS multiplayer_results (
                     id INT AUTO_INCREMENT PRIMARY KEY,
                     match_id INT NOT NULL,
+                    round INT NOT NULL DEFAULT 1,
                     player_name VARCHAR(50) NOT NULL,
                     score INT NOT NULL,
                     played_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    INDEX (match_id, round)
+                )
+            """;
+
+            // Une ligne par manche terminée ; les scores des participants vont dans multiplayer_results,
+            // avec le même (match_id, round)
+            String createMatchSummariesTable = """
+                CREATE TABLE IF NOT EXISTS match_summaries (
+                    id INT AUTO_INCREMENT PRIMARY KEY,
+                    match_id INT NOT NULL,
+                    round INT NOT NULL,
+                    winner VARCHAR(50),
+                    player_count INT NOT NULL,
+                    duration_ms BIGINT NOT NULL,
+                    ended_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                     INDEX (match_id)
                 )
             """;
@@ -45,12 +61,27 @@ public class GestionBaseDonnees {
             try (Statement stmt = conn.createStatement()) {
                 stmt.execute(createGameResultsTable);
                 stmt.execute(createMultiplayerResultsTable);
+                stmt.execute(createMatchSummariesTable);
             }
+            migrateMultiplayerResults(conn);
         } catch (SQLException e) {
             System.err.println("Error initializing database: " + e.getMessage());
         }
     }
 
+    // Bases créées avant le découpage en manches : les scores existants sont rattachés à la manche 1
+    private static void migrateMultiplayerResults(Connection conn) throws SQLException {
+        try (ResultSet columns = conn.getMetaData().getColumns(conn.getCatalog(), null, "multiplayer_results", "round")) {
+            if (columns.next()) {
+                return;
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE multiplayer_results ADD COLUMN round INT NOT NULL DEFAULT 1 AFTER match_id, "
+                    + "ADD INDEX (match_id, round)");
+        }
+    }
+
     public static boolean saveGameResult(String playerName, int score, int level, String difficulty) {
         String sql = "INSERT INTO game_results (player_name, score, level, difficulty) VALUES (?, ?, ?, ?)";
 
@@ -86,6 +117,45 @@ public class GestionBaseDonnees {
         }
     }
 
+    // Écrit plusieurs manches en un lot et une transaction ; appelé par MatchResultWriter
+    static boolean saveMatchResults(List<MatchResultWriter.Result> results) {
+        String summarySql = "INSERT INTO match_summaries (match_id, round, winner, player_count, duration_ms) VALUES (?, ?, ?, ?, ?)";
+        String playerSql = "INSERT INTO multiplayer_results (match_id, round, player_name, score) VALUES (?, ?, ?, ?)";
+
+        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASS)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement summary = conn.prepareStatement(summarySql);
+                 PreparedStatement player = conn.prepareStatement(playerSql)) {
+
+                for (MatchResultWriter.Result result : results) {
+                    summary.setInt(1, result.matchId);
+                    summary.setInt(2, result.round);
+                    summary.setString(3, result.winner);
+                    summary.setInt(4, result.participants.size());
+                    summary.setLong(5, result.durationMillis);
+                    summary.addBatch();
+                    for (GameMessage.PlayerState participant : result.participants) {
+                        player.setInt(1, result.matchId);
+                        player.setInt(2, result.round);
+                        player.setString(3, participant.getName());
+                        player.setInt(4, participant.getScore());
+                        player.addBatch();
+                    }
+                }
+                summary.executeBatch();
+                player.executeBatch();
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error saving match results: " + e.getMessage());
+            return false;
+        }
+    }
+
     public static List<String> getHighScores(int limit) {
         List<String> scores = new ArrayList<>();
         String sql = "SELECT player_name, score, level, difficulty, " +
@@ -118,9 +188,9 @@ public class GestionBaseDonnees {
     public static List<String> getMultiplayerHighScores(int limit) {
         List<String> scores = new ArrayList<>();
         String sql = """
-            SELECT m.match_id, m.player_name, m.score, 
+            SELECT m.match_id, m.round, m.player_name, m.score,
                    DATE_FORMAT(m.played_on, '%d/%m/%Y %H:%i') as date,
-                   COUNT(*) OVER (PARTITION BY m.match_id) as players_in_match
+                   COUNT(*) OVER (PARTITION BY m.match_id, m.round) as players_in_match
             FROM multiplayer_results m
             ORDER BY m.score DESC
             LIMIT ?
@@ -133,10 +203,11 @@ public class GestionBaseDonnees {
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                String entry = String.format("%s - %d pts (Match #%d, %d joueurs) le %s",
+                String entry = String.format("%s - %d pts (Match #%d, manche %d, %d joueurs) le %s",
                         rs.getString("player_name"),
                         rs.getInt("score"),
                         rs.getInt("match_id"),
+                        rs.getInt("round"),
                         rs.getInt("players_in_match"),
                         rs.getString("date"));
 
@@ -102,6 +102,11 @@ public class Joueur {
         health--;
     }
 
+    // En multijoueur, la vie est décidée par le serveur
+    public void setHealth(int health) {
+        this.health = health;
+    }
+
     public void draw(Graphics g) {
         g.drawImage(sprites[currentSprite], x, y, 50, 60, null);
         drawHealthBar(g);
@@ -0,0 +1,89 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Connexion d'un client qui tourne dans le même processus que le serveur (le joueur qui héberge).
+ *
+ * Pas de socket ni de sérialisation : les messages du client sont traités directement par le serveur
+ * sur le thread qui les envoie, et ceux du serveur passent par la même {@link OutboundQueue} qu'une
+ * connexion réseau (fusions et protection contre les clients lents comprises), vidée par le client.
+ * Les compteurs comptent les messages mais aucun octet.
+ */
+class LoopbackConnection implements ClientConnection {
+    private final OutboundQueue outbound;
+    private final NetStats stats = new NetStats(Server.getStats());
+    private final RateLimiter rateLimiter;
+    private final AtomicBoolean disconnected = new AtomicBoolean();
+    private volatile String playerName;
+
+    LoopbackConnection(ServerConfig config) {
+        this.outbound = new OutboundQueue(config.queueCapacity, config.queueDegradeThreshold);
+        this.rateLimiter = new RateLimiter(config);
+    }
+
+    // Côté client : le premier message est le PLAYER_JOIN, les suivants vont à la partie
+    void deliver(GameMessage message) {
+        stats.recordIn(message.getType(), 0);
+        if (playerName == null) {
+            playerName = message.getPlayerName();
+            if (!Server.handleJoin(this, message)) {
+                // La réponse NAME_EXISTS reste dans la file jusqu'à ce que le client la lise
+                playerName = null;
+                disconnect();
+            }
+            return;
+        }
+        Server.handleMessage(this, message);
+    }
+
+    // Côté client : bloque jusqu'au prochain message du serveur ; null une fois la connexion fermée
+    GameMessage take() throws InterruptedException {
+        GameMessage message = outbound.take();
+        if (message != null) {
+            stats.recordOut(message.getType(), 0);
+        }
+        return message;
+    }
+
+    // Côté client : départ du joueur, comme la fin du thread de lecture d'une connexion réseau
+    void disconnect() {
+        outbound.close();
+        if (disconnected.compareAndSet(false, true)) {
+            Server.removeClient(this, playerName);
+        }
+    }
+
+    @Override
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    @Override
+    public void sendMessage(GameMessage message) {
+        if (!outbound.offer(message)) {
+            System.err.println("Outbound queue full for " + playerName + ", disconnecting slow client");
+            OutboundQueue.slowConsumerDisconnects.increment();
+            close();
+        }
+    }
+
+    @Override
+    public OutboundQueue getOutboundQueue() {
+        return outbound;
+    }
+
+    @Override
+    public NetStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    // Côté serveur : le client voit la file se fermer et se déconnecte
+    @Override
+    public void close() {
+        outbound.close();
+    }
+}
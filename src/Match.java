@@ -0,0 +1,607 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Une partie hébergée par le serveur : son propre roster, sa portée de diffusion et sa détection du
+ * vainqueur. Les parties d'un même processus ne partagent aucun état.
+ *
+ * Le nom d'un joueur est réservé par un seul putIfAbsent. L'état de chaque joueur est un
+ * {@link GameMessage.PlayerState} immuable remplacé par CAS : deux joueurs qui bougent ne se
+ * disputent rien. Les lecteurs (tick, détection du vainqueur, roster envoyé à l'arrivée) parcourent
+ * un instantané immuable du roster, republié à chaque arrivée ou départ. Seuls ces changements de
+ * composition et les éliminations, diffusés aux clients en ROSTER_UPDATE versionnés, passent par le
+ * verrou de la partie.
+ *
+ * Avec le tick, ennemis et projectiles sont simulés par le serveur ({@link MatchWorld}) : la vie et
+ * le score des joueurs ne dépendent plus que de lui, les clients se contentent d'afficher.
+ */
+class Match {
+    enum JoinResult {
+        ACCEPTED,
+        NAME_TAKEN,
+        // La partie vient d'être fermée (dernier joueur parti) : en ouvrir une nouvelle
+        CLOSED
+    }
+
+    // Un joueur de la partie ; son état courant est remplacé en bloc, jamais modifié sur place
+    static class Player {
+        final String name;
+        final int shipType;
+        final AtomicReference<GameMessage.PlayerState> state;
+        final AtomicBoolean alive = new AtomicBoolean(true);
+        // Positions des derniers ticks, pour juger les tirs adverses ; seul le thread du tick y touche
+        final PositionHistory history;
+
+        Player(String name, int shipType, int historyCapacity) {
+            this.name = name;
+            this.shipType = shipType;
+            this.state = new AtomicReference<>(new GameMessage.PlayerState(name, 380, 450, 3, 0));
+            this.history = new PositionHistory(historyCapacity);
+        }
+    }
+
+    // Ticks pendant lesquels un champ modifié est répété aux clients en UDP, pour survivre aux pertes
+    private static final int UDP_REDUNDANCY = 3;
+
+    private final int id;
+    private final ServerConfig config;
+    private final Set<ClientConnection> clients = new CopyOnWriteArraySet<>();
+    private final ConcurrentHashMap<String, Player> players = new ConcurrentHashMap<>();
+    // Instantané immuable du roster, dans l'ordre d'arrivée
+    private volatile List<Player> roster = List.of();
+    private volatile int maxPlayersEver = 0;
+    // Version de la liste des joueurs envoyée aux clients, sous membershipLock
+    private int rosterVersion;
+    private final AtomicBoolean gameOverSent = new AtomicBoolean();
+    // Joueurs de la manche en cours, partis compris, pour enregistrer leur score final ; republié sous membershipLock
+    private volatile List<Player> participants = List.of();
+    private volatile long roundStart;
+    // Manches terminées ; modifié par le seul gagnant du CAS de gameOverSent, ou à la fermeture
+    private int round;
+    // Arrivées et départs seulement ; verrou explicite plutôt que synchronized pour ne pas épingler les threads virtuels
+    private final ReentrantLock membershipLock = new ReentrantLock();
+    // Dernier état envoyé à chaque client, pour les GAME_STATE en delta ; modifié par le seul thread du tick
+    private final Map<ClientConnection, DeltaBaseline> baselines = new HashMap<>();
+    // Départs à répercuter sur les baselines au prochain tick
+    private final Queue<String> departedNames = new ConcurrentLinkedQueue<>();
+    private final Queue<ClientConnection> departedClients = new ConcurrentLinkedQueue<>();
+    // Écrit par le seul thread du tick, lu aussi pour horodater l'enregistrement
+    private volatile int tickCount = 0;
+    private boolean closed;
+    // Fin de partie (résultat abandonné, enregistreur) déjà traitée par finishClose
+    private final AtomicBoolean finished = new AtomicBoolean();
+    // Index spatial du dernier tick, null si le filtrage par zone d'intérêt est désactivé
+    private volatile SpatialGrid grid;
+    private final MatchWorld world;
+    // null si la partie n'est pas enregistrée (--record)
+    private final MatchRecorder recorder;
+    private final MatchWorld.Listener worldListener = new MatchWorld.Listener() {
+        @Override
+        public void playerHit(String name) {
+            damagePlayer(name);
+        }
+
+        @Override
+        public void enemyKilled(String owner, int points) {
+            addScore(owner, points);
+        }
+    };
+
+    Match(int id, ServerConfig config) {
+        this(id, config, new MatchWorld());
+    }
+
+    Match(int id, ServerConfig config, MatchWorld world) {
+        this.id = id;
+        this.config = config;
+        this.world = world;
+        this.recorder = config.recordDir != null ? MatchRecorder.open(config.recordDir, id) : null;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    // Traite le message PLAYER_JOIN initial d'une connexion
+    JoinResult join(ClientConnection client, GameMessage joinMsg) {
+        String playerName = joinMsg.getPlayerName();
+        int shipType = joinMsg.getShipType();
+
+        membershipLock.lock();
+        try {
+            if (closed) {
+                return JoinResult.CLOSED;
+            }
+            // Un tick de marge pour encadrer l'instant le plus ancien
+            int historyCapacity = config.tickRate > 0 ? config.maxRewindMillis * config.tickRate / 1000 + 2 : 0;
+            Player player = new Player(playerName, shipType, historyCapacity);
+            if (players.putIfAbsent(playerName, player) != null) {
+                GameMessage nameExistsMsg = GameMessage.createChatMessage("SYSTEM", "NAME_EXISTS", id);
+                sendTo(client, nameExistsMsg);
+                return JoinResult.NAME_TAKEN;
+            }
+
+            record(MatchRecorder.IN, playerName, joinMsg);
+            GameMessage nameAcceptedMsg = GameMessage.createChatMessage("SYSTEM", "NAME_ACCEPTED", id);
+            sendTo(client, nameAcceptedMsg);
+            Server.onPlayerAccepted(client, id);
+            clients.add(client);
+            addPlayer(player);
+
+            // Les autres ne reçoivent que son arrivée ; lui reçoit tout l'état de la partie en un message,
+            // au prochain tick pour y joindre les ennemis et projectiles
+            rosterVersion++;
+            broadcast(rosterMessage(GameMessage.ROSTER_ADD, List.of(player)), client);
+            if (config.tickRate <= 0) {
+                sendTo(client, snapshotMessage(null, Server.serverTimeMillis(), List.of()));
+            }
+
+            GameMessage chatMsg = GameMessage.createChatMessage("SYSTEM", playerName + " a rejoint le jeu", id);
+            broadcast(chatMsg, null);
+            return JoinResult.ACCEPTED;
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    // Traite un message reçu d'un joueur de la partie
+    void handleMessage(ClientConnection client, GameMessage clientMessage) {
+        String playerName = client.getPlayerName();
+        record(MatchRecorder.IN, playerName, clientMessage);
+        switch (clientMessage.getType()) {
+            case PLAYER_POSITION:
+                // Avec la simulation du serveur, vie et score reçus du client sont ignorés
+                int fields = config.tickRate > 0
+                        ? clientMessage.getFields() & (GameMessage.FIELD_X | GameMessage.FIELD_Y)
+                        : clientMessage.getFields();
+                updatePlayerPosition(
+                        playerName,
+                        fields,
+                        clientMessage.getX(),
+                        clientMessage.getY(),
+                        clientMessage.getHealth(),
+                        clientMessage.getScore()
+                );
+                if (config.tickRate <= 0) {
+                    broadcastUnreliable(clientMessage, client);
+                }
+                break;
+
+            case PLAYER_SHOOT:
+                if (config.tickRate > 0) {
+                    world.spawnProjectile(playerName, clientMessage.getProjectileX(), clientMessage.getProjectileY(),
+                            Server.serverTimeMillis(), rewindFor(client));
+                } else {
+                    broadcastUnreliable(clientMessage, null);
+                }
+                break;
+
+            case PLAYER_HIT:
+                // Avec la simulation du serveur, les touches sont jugées par MatchWorld et non par le tireur
+                if (config.tickRate <= 0) {
+                    broadcast(clientMessage, null);
+                }
+                break;
+
+            case GAME_OVER:
+                // Broadcast the game over message to all clients
+                broadcast(clientMessage, null);
+                break;
+
+            case ROSTER_UPDATE:
+                // Le client a manqué un changement de la liste des joueurs
+                membershipLock.lock();
+                try {
+                    sendTo(client, rosterMessage(GameMessage.ROSTER_FULL, roster));
+                } finally {
+                    membershipLock.unlock();
+                }
+                break;
+
+            case CHAT_MESSAGE:
+                GameMessage formattedMsg = GameMessage.createChatMessage(
+                        playerName, clientMessage.getChatContent(), id
+                );
+                broadcast(formattedMsg, null);
+                break;
+
+            default:
+                System.err.println("Unknown message type from " + playerName + ": " + clientMessage.getType());
+                break;
+        }
+    }
+
+    // Appelé par le seul thread du tick, sans verrou : lit l'instantané du roster et l'état publié de chaque joueur
+    void tick(long now) {
+        tickCount++;
+        String departed;
+        while ((departed = departedNames.poll()) != null) {
+            for (DeltaBaseline baseline : baselines.values()) {
+                baseline.forget(departed);
+            }
+        }
+        ClientConnection departedClient;
+        while ((departedClient = departedClients.poll()) != null) {
+            baselines.remove(departedClient);
+        }
+
+        List<Player> players = roster;
+        if (players.isEmpty()) {
+            return;
+        }
+        if (config.maxRewindMillis > 0) {
+            for (Player player : players) {
+                GameMessage.PlayerState state = player.state.get();
+                player.history.add(now, state.getX(), state.getY());
+            }
+        }
+        // Les collisions modifient la vie et le score : le GAME_STATE de ce tick en tient déjà compte
+        world.step(now, players, worldListener);
+        List<GameMessage.PlayerState> states = new ArrayList<>(players.size());
+        for (Player player : players) {
+            states.add(player.state.get());
+        }
+        SpatialGrid currentGrid = config.interestRadius > 0 ? buildGrid() : null;
+        grid = currentGrid;
+        Map<ClientConnection, List<GameMessage.EntityState>> shotsInView =
+                currentGrid != null ? projectilesInView(currentGrid) : null;
+        List<GameMessage.EntityState> changed = world.getChanged();
+        List<Integer> removed = world.getRemoved();
+        boolean distantDue = tickCount % config.distantUpdateDivisor == 0;
+        // Sans filtrage par zone, tous reçoivent le même lot d'entités : construit et encodé une seule fois
+        GameMessage sharedUpdate = null;
+        if (shotsInView == null && (!changed.isEmpty() || !removed.isEmpty())) {
+            sharedUpdate = GameMessage.createEnemyUpdateMessage(tickCount, now, changed, removed, id);
+            share(sharedUpdate);
+        }
+        for (ClientConnection client : clients) {
+            DeltaBaseline baseline = baselines.get(client);
+            if (baseline == null) {
+                // Nouveau venu : un seul instantané de la partie, puis les deltas et lots de chaque tick
+                baseline = new DeltaBaseline();
+                baselines.put(client, baseline);
+                sendTo(client, snapshotMessage(baseline, now, world.snapshot()));
+                continue;
+            }
+            if (sharedUpdate != null) {
+                sendTo(client, sharedUpdate);
+            } else if (!changed.isEmpty() || !removed.isEmpty()) {
+                List<GameMessage.EntityState> entities = changed;
+                if (shotsInView != null) {
+                    entities = new ArrayList<>();
+                    for (GameMessage.EntityState entity : changed) {
+                        if (entity.getKind() != GameMessage.KIND_PROJECTILE) {
+                            entities.add(entity);
+                        }
+                    }
+                    entities.addAll(shotsInView.getOrDefault(client, List.of()));
+                }
+                if (!entities.isEmpty() || !removed.isEmpty()) {
+                    sendTo(client, GameMessage.createEnemyUpdateMessage(tickCount, now, entities, removed, id));
+                }
+            }
+            int redundancy = Server.isUdpActive(client) ? UDP_REDUNDANCY : 0;
+            Set<String> nearby = currentGrid != null ? nearby(currentGrid, client) : null;
+            List<GameMessage.PlayerState> entries = baseline.diff(tickCount, states, config.keyframeInterval,
+                    redundancy, nearby, distantDue, client.getPlayerName());
+            // Même vide, le GAME_STATE horodate le tick : le client sait que les joueurs absents n'ont pas bougé.
+            // Avec une zone d'intérêt, rien n'est envoyé si rien n'a changé autour du client ; l'image clé, jamais
+            // vide, garde l'horloge à jour
+            if (!entries.isEmpty() || currentGrid == null) {
+                sendUnreliableTo(client, GameMessage.createGameStateMessage(tickCount, now, entries, id));
+            }
+        }
+    }
+
+    // Nouveaux projectiles par destinataire : un tir monte verticalement, seuls les joueurs proches de sa colonne le voient
+    private Map<ClientConnection, List<GameMessage.EntityState>> projectilesInView(SpatialGrid currentGrid) {
+        Map<ClientConnection, List<GameMessage.EntityState>> byClient = new HashMap<>();
+        for (GameMessage.EntityState entity : world.getChanged()) {
+            if (entity.getKind() == GameMessage.KIND_PROJECTILE) {
+                currentGrid.forEachInColumn(entity.getX(), config.interestRadius,
+                        entry -> byClient.computeIfAbsent(entry.client, c -> new ArrayList<>()).add(entity));
+            }
+        }
+        return byClient;
+    }
+
+    private SpatialGrid buildGrid() {
+        SpatialGrid next = new SpatialGrid(config.interestRadius);
+        for (ClientConnection client : clients) {
+            Player player = players.get(client.getPlayerName());
+            if (player != null) {
+                GameMessage.PlayerState state = player.state.get();
+                next.insert(client, player.name, state.getX(), state.getY());
+            }
+        }
+        return next;
+    }
+
+    // Noms des joueurs dans la zone d'intérêt du client, lui compris
+    private Set<String> nearby(SpatialGrid currentGrid, ClientConnection client) {
+        Set<String> names = new HashSet<>();
+        Player self = players.get(client.getPlayerName());
+        if (self != null) {
+            GameMessage.PlayerState state = self.state.get();
+            currentGrid.forEachWithin(state.getX(), state.getY(), config.interestRadius, entry -> names.add(entry.name));
+        }
+        return names;
+    }
+
+    public void broadcast(GameMessage message, ClientConnection excludeClient) {
+        share(message);
+        record(MatchRecorder.OUT_ALL, excludeClient != null ? excludeClient.getPlayerName() : null, message);
+        for (ClientConnection client : clients) {
+            if (client != excludeClient) {
+                client.sendMessage(message);
+            }
+        }
+    }
+
+    // Positions et tirs : UDP pour les clients qui l'ont ouvert, TCP pour les autres
+    void broadcastUnreliable(GameMessage message, ClientConnection excludeClient) {
+        share(message);
+        record(MatchRecorder.OUT_ALL, excludeClient != null ? excludeClient.getPlayerName() : null, message);
+        for (ClientConnection client : clients) {
+            if (client != excludeClient) {
+                Server.sendUnreliable(client, message);
+            }
+        }
+    }
+
+    // Encodé une fois pour tous les destinataires ; inutile pour un seul
+    private void share(GameMessage message) {
+        if (clients.size() > 1) {
+            MessageCodec.share(message);
+        }
+    }
+
+    private void sendTo(ClientConnection client, GameMessage message) {
+        record(MatchRecorder.OUT_ONE, client.getPlayerName(), message);
+        client.sendMessage(message);
+    }
+
+    private void sendUnreliableTo(ClientConnection client, GameMessage message) {
+        record(MatchRecorder.OUT_ONE, client.getPlayerName(), message);
+        Server.sendUnreliable(client, message);
+    }
+
+    // Retard avec lequel le tireur voit ses adversaires : l'interpolation du client plus la moitié de son RTT
+    private int rewindFor(ClientConnection client) {
+        long rttMicros = client.getStats().getLastRttMicros();
+        long rewind = GameMessage.INTERPOLATION_DELAY_MS + (rttMicros > 0 ? rttMicros / 2000 : 0);
+        return (int) Math.min(config.maxRewindMillis, rewind);
+    }
+
+    // Un simple dépôt dans la file de l'enregistreur, qui encode sur son propre thread
+    private void record(byte direction, String player, GameMessage message) {
+        if (recorder != null) {
+            recorder.record(tickCount, direction, player, message);
+        }
+    }
+
+    // Sous membershipLock
+    private void addPlayer(Player player) {
+        List<Player> next = new ArrayList<>(roster);
+        next.add(player);
+        roster = List.copyOf(next);
+        if (next.size() > maxPlayersEver) {
+            maxPlayersEver = next.size();
+        }
+        if (participants.isEmpty() || gameOverSent.get()) {
+            // Première manche, ou une nouvelle commence avec ce joueur et ceux qui sont restés
+            participants = roster;
+            roundStart = Server.serverTimeMillis();
+        } else {
+            List<Player> joined = new ArrayList<>(participants);
+            joined.add(player);
+            participants = List.copyOf(joined);
+        }
+        // Une nouvelle manche peut se jouer avec ce joueur
+        gameOverSent.set(false);
+    }
+
+    void removeClient(ClientConnection client, String name) {
+        membershipLock.lock();
+        try {
+            if (!clients.remove(client)) {
+                return;
+            }
+            Player player = players.remove(name);
+            if (player != null) {
+                player.alive.set(false);
+                List<Player> next = new ArrayList<>(roster);
+                next.remove(player);
+                roster = List.copyOf(next);
+            }
+            departedNames.add(name);
+            departedClients.add(client);
+            System.out.println("Player " + name + " disconnected");
+            GameMessage leaveMsg = GameMessage.createChatMessage("SYSTEM", name + " a quitté le jeu", id);
+            broadcast(leaveMsg, null);
+            if (player != null) {
+                publishRosterChange(GameMessage.ROSTER_REMOVE, player);
+            }
+            checkForWinner();
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    // Ferme la partie si plus personne n'y joue ; une partie fermée refuse les nouveaux joueurs.
+    // Sans attente, appelable sous le verrou de la table des parties : le reste est fait par finishClose()
+    boolean closeIfEmpty() {
+        membershipLock.lock();
+        try {
+            if (!closed && clients.isEmpty()) {
+                closed = true;
+            }
+            return closed;
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    // Après closeIfEmpty(), hors de tout verrou ; sans effet si la partie n'est pas fermée ou déjà terminée
+    void finishClose() {
+        membershipLock.lock();
+        try {
+            if (!closed) {
+                return;
+            }
+        } finally {
+            membershipLock.unlock();
+        }
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        if (maxPlayersEver >= 2 && !gameOverSent.get()) {
+            // Manche abandonnée sans survivant (derniers joueurs éliminés ou partis ensemble)
+            saveResult(null);
+        }
+        if (recorder != null) {
+            // L'enregistreur vide sa file avant de fermer : pas sur le thread réseau qui a vu partir le dernier joueur
+            Thread.ofVirtual().name("recorder-close-" + id).start(recorder::close);
+        }
+    }
+
+    // N'applique que les champs présents dans le masque (PLAYER_POSITION en delta), sans verrou
+    void updatePlayerPosition(String name, int fields, int x, int y, int health, int score) {
+        Player player = players.get(name);
+        if (player == null) {
+            return;
+        }
+        GameMessage.PlayerState delta = new GameMessage.PlayerState(name, fields, x, y, health, score);
+        GameMessage.PlayerState updated = player.state.updateAndGet(current -> GameMessage.PlayerState.merge(current, delta));
+        checkDeath(player, updated);
+    }
+
+    // Touché par un ennemi ou un projectile simulé par le serveur
+    private void damagePlayer(String name) {
+        Player player = players.get(name);
+        if (player == null) {
+            return;
+        }
+        GameMessage.PlayerState updated = player.state.updateAndGet(current -> current.getHealth() <= 0 ? current
+                : new GameMessage.PlayerState(name, current.getX(), current.getY(), current.getHealth() - 1, current.getScore()));
+        checkDeath(player, updated);
+    }
+
+    private void addScore(String name, int points) {
+        Player player = players.get(name);
+        if (player != null) {
+            player.state.updateAndGet(current -> new GameMessage.PlayerState(name, current.getX(), current.getY(),
+                    current.getHealth(), current.getScore() + points));
+        }
+    }
+
+    private void checkDeath(Player player, GameMessage.PlayerState updated) {
+        // If player just died (was alive but now has 0 health) ; le CAS garantit une seule annonce
+        if (updated.getHealth() <= 0 && player.alive.compareAndSet(true, false)) {
+            // Notify all clients about the player's death
+            GameMessage deathMsg = GameMessage.createChatMessage("SYSTEM", player.name + " a été éliminé!", id);
+            broadcast(deathMsg, null);
+            publishRosterChange(GameMessage.ROSTER_CHANGE, player);
+            // Immediately check for winner
+            checkForWinner();
+        }
+    }
+
+    // Un seul joueur par message : le coût d'une arrivée ou d'un départ ne dépend plus de la taille de la partie
+    private void publishRosterChange(int op, Player player) {
+        membershipLock.lock();
+        try {
+            // Incrémentée et diffusée sous le verrou : chaque client reçoit les versions dans l'ordre
+            rosterVersion++;
+            broadcast(rosterMessage(op, List.of(player)), null);
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    // Sous le verrou, pour que la version corresponde à la liste ; amorce la baseline du destinataire s'il y en a une
+    private GameMessage snapshotMessage(DeltaBaseline baseline, long now, List<GameMessage.EntityState> entities) {
+        membershipLock.lock();
+        try {
+            List<Player> current = roster;
+            List<GameMessage.RosterEntry> entries = new ArrayList<>(current.size());
+            List<GameMessage.PlayerState> states = new ArrayList<>(current.size());
+            for (Player player : current) {
+                entries.add(new GameMessage.RosterEntry(player.name, player.shipType, player.alive.get()));
+                states.add(player.state.get());
+            }
+            if (baseline != null) {
+                baseline.diff(tickCount, states, config.keyframeInterval);
+            }
+            return GameMessage.createMatchSnapshotMessage(tickCount, now, rosterVersion, entries, states, entities, id);
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    // Sous membershipLock
+    private GameMessage rosterMessage(int op, List<Player> players) {
+        List<GameMessage.RosterEntry> entries = new ArrayList<>(players.size());
+        for (Player player : players) {
+            entries.add(new GameMessage.RosterEntry(player.name, player.shipType, player.alive.get()));
+        }
+        return GameMessage.createRosterMessage(rosterVersion, op, entries, id);
+    }
+
+    int getPlayerCount() {
+        return roster.size();
+    }
+
+    MatchWorld getWorld() {
+        return world;
+    }
+
+    // Instantané immuable du roster, sans copie
+    List<Player> getRoster() {
+        return roster;
+    }
+
+    private void checkForWinner() {
+        // Only declare a winner if at least 2 players have ever been in the session
+        if (maxPlayersEver < 2) return;
+
+        Player winner = null;
+        for (Player player : roster) {
+            if (player.alive.get() && player.state.get().getHealth() > 0) {
+                if (winner != null) {
+                    return;
+                }
+                winner = player;
+            }
+        }
+
+        // If there's only one player left, they're the winner ; une seule annonce même si deux morts se croisent
+        if (winner != null && gameOverSent.compareAndSet(false, true)) {
+            // Notify all clients about the game over
+            for (ClientConnection client : clients) {
+                boolean isWinner = client.getPlayerName().equals(winner.name);
+                Player player = players.get(client.getPlayerName());
+                int score = player != null ? player.state.get().getScore() : 0;
+                GameMessage gameOverMsg = GameMessage.createGameOverMessage(client.getPlayerName(), isWinner, score, id);
+                sendTo(client, gameOverMsg);
+            }
+            saveResult(winner.name);
+        }
+    }
+
+    // Scores finaux de la manche, y compris ceux des joueurs partis, confiés à l'écriture en arrière-plan
+    private void saveResult(String winner) {
+        List<GameMessage.PlayerState> scores = new ArrayList<>();
+        for (Player player : participants) {
+            scores.add(player.state.get());
+        }
+        round++;
+        Server.saveMatchResult(new MatchResultWriter.Result(id, round, winner,
+                Server.serverTimeMillis() - roundStart, List.copyOf(scores)));
+    }
+}
@@ -0,0 +1,248 @@
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Enregistrement d'une partie : chaque message reçu ou envoyé, avec le tick et l'heure du serveur, dans
+ * un fichier en ajout seul projeté en mémoire (match-&lt;id&gt;.rec, ou match-&lt;id&gt;-&lt;date&gt;.rec si ce nom
+ * est déjà pris). Relu par {@link MatchReplay}.
+ *
+ * Le chemin de diffusion ne fait que déposer le message (immuable) dans une file bornée ; un thread
+ * virtuel par partie l'encode directement dans la projection. Si la file déborde, l'enregistrement
+ * perd des messages (comptés) plutôt que de ralentir la partie.
+ *
+ * Format : en-tête [magic i32][version i32][matchId i32][réservé i32][longueur valide i64], puis des
+ * enregistrements [tick i32][heure ms i64][sens u8][joueur chaîne][trame du codec]. La longueur valide
+ * est mise à jour après chaque lot : un fichier de serveur arrêté brutalement reste lisible.
+ */
+class MatchRecorder {
+    static final int MAGIC = 0x53445243; // "SDRC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    private static final int LENGTH_OFFSET = 16;
+    // Message reçu du joueur nommé
+    static final byte IN = 0;
+    // Message envoyé au seul joueur nommé
+    static final byte OUT_ONE = 1;
+    // Message diffusé à toute la partie, sauf au joueur nommé s'il y en a un
+    static final byte OUT_ALL = 2;
+
+    private static final long CHUNK_SIZE = 16L << 20;
+    // En-tête d'un enregistrement et longueur du nom, avant le nom lui-même
+    private static final int RECORD_OVERHEAD = 13 + 5;
+    private static final int QUEUE_CAPACITY = 8192;
+
+    static final LongAdder totalDropped = new LongAdder();
+
+    // Un message enregistré, tel qu'écrit puis relu
+    static class Entry {
+        final int tick;
+        final long time;
+        final byte direction;
+        final String player;
+        final GameMessage message;
+
+        Entry(int tick, long time, byte direction, String player, GameMessage message) {
+            this.tick = tick;
+            this.time = time;
+            this.direction = direction;
+            this.player = player;
+            this.message = message;
+        }
+    }
+
+    // Marque la fin de l'enregistrement dans la file
+    private static final Entry END = new Entry(0, 0, IN, null, null);
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+    private long position = HEADER_SIZE;
+    private volatile boolean closed;
+    private long recorded;
+
+    private MatchRecorder(Path path, int matchId) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, matchId);
+        header.putLong(LENGTH_OFFSET, position);
+        mapChunk();
+        this.writer = Thread.ofVirtual().name("recorder-" + matchId).start(this::writeLoop);
+    }
+
+    // null si le fichier ne peut pas être créé : la partie se joue alors sans enregistrement
+    static MatchRecorder open(String directory, int matchId) {
+        try {
+            Path dir = Path.of(directory);
+            Files.createDirectories(dir);
+            MatchRecorder recorder = create(dir, matchId);
+            System.out.println("Recording match " + matchId + " to " + recorder.path);
+            return recorder;
+        } catch (IOException e) {
+            System.err.println("Cannot record match " + matchId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Jamais par-dessus un enregistrement existant : un identifiant réutilisé (serveur redémarré, --record
+    // partagé) reçoit un nom daté
+    private static MatchRecorder create(Path dir, int matchId) throws IOException {
+        try {
+            return new MatchRecorder(dir.resolve("match-" + matchId + ".rec"), matchId);
+        } catch (FileAlreadyExistsException e) {
+            String started = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            for (int attempt = 1; ; attempt++) {
+                String suffix = attempt == 1 ? started : started + "-" + attempt;
+                try {
+                    return new MatchRecorder(dir.resolve("match-" + matchId + "-" + suffix + ".rec"), matchId);
+                } catch (FileAlreadyExistsException again) {
+                    // Même seconde : numéro suivant
+                }
+            }
+        }
+    }
+
+    // player : expéditeur pour IN, destinataire pour OUT_ONE, joueur exclu (ou null) pour OUT_ALL
+    void record(int tick, byte direction, String player, GameMessage message) {
+        if (closed || !queue.offer(new Entry(tick, Server.serverTimeMillis(), direction, player, message))) {
+            totalDropped.increment();
+        }
+    }
+
+    // Attend que tout soit écrit ; appelé à la fermeture de la partie
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (Entry record : batch) {
+                    if (record == END) {
+                        finish();
+                        return;
+                    }
+                    write(record);
+                }
+                batch.clear();
+                header.putLong(LENGTH_OFFSET, position);
+            }
+        } catch (IOException e) {
+            System.err.println("Recording of " + path + " stopped: " + e.getMessage());
+            closed = true;
+            queue.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Entry record) throws IOException {
+        // Place pour le plus grand enregistrement possible avec ce nom : la trame est encodée sur place
+        int nameBytes = record.player != null ? 3 * record.player.length() : 0;
+        if (chunk.remaining() < RECORD_OVERHEAD + nameBytes + MessageCodec.LENGTH_PREFIX + MessageCodec.MAX_FRAME_SIZE) {
+            mapChunk();
+        }
+        chunk.putInt(record.tick);
+        chunk.putLong(record.time);
+        chunk.put(record.direction);
+        MessageCodec.writeString(chunk, record.player);
+        MessageCodec.encode(record.message, chunk);
+        position = chunkStart + chunk.position();
+        recorded++;
+    }
+
+    // Projette la tranche suivante du fichier à partir de la position courante
+    private void mapChunk() throws IOException {
+        chunkStart = position;
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, chunkStart, CHUNK_SIZE);
+    }
+
+    private void finish() throws IOException {
+        header.putLong(LENGTH_OFFSET, position);
+        chunk.force();
+        header.force();
+        try {
+            // Rend la fin de la dernière tranche projetée ; refusé par certains systèmes tant que la projection existe
+            channel.truncate(position);
+        } catch (IOException e) {
+            // La longueur valide de l'en-tête suffit au lecteur
+        }
+        channel.close();
+        System.out.printf("Recorded %,d messages (%,d bytes) to %s%n", recorded, position, path);
+    }
+
+    // Lecture séquentielle d'un enregistrement, jusqu'à la longueur valide de l'en-tête
+    static class Reader {
+        private final ByteBuffer data;
+        final int matchId;
+
+        Reader(Path path) throws IOException {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer head = file.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (head.getInt(0) != MAGIC || head.getInt(4) != VERSION) {
+                    throw new ProtocolException("Not a match recording: " + path);
+                }
+                matchId = head.getInt(8);
+                long length = Math.min(head.getLong(LENGTH_OFFSET), file.size());
+                data = file.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, length - HEADER_SIZE);
+            }
+        }
+
+        // null à la fin du fichier
+        Entry next() throws ProtocolException {
+            if (!data.hasRemaining()) {
+                return null;
+            }
+            try {
+                int tick = data.getInt();
+                long time = data.getLong();
+                byte direction = data.get();
+                String player = MessageCodec.readString(data);
+                int length = data.getShort() & 0xFFFF;
+                GameMessage message = MessageCodec.decode(data.slice(data.position(), length));
+                data.position(data.position() + length);
+                return new Entry(tick, time, direction, player, message);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new ProtocolException("Truncated recording");
+            }
+        }
+
+        void rewind() {
+            data.rewind();
+        }
+    }
+}
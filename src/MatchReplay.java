@@ -0,0 +1,271 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejoue une partie enregistrée par le serveur (Server --record=dir, voir {@link MatchRecorder}).
+ *
+ *   java MatchReplay match-12.rec --speed=4              diffuse la partie aux clients qui se connectent
+ *   java MatchReplay match-12.rec --mode=drive --speed=max   renvoie les messages des joueurs à un serveur
+ *
+ * serve : un faux serveur accepte des clients du jeu et leur envoie, au rythme enregistré (1x, 4x ou
+ *         max), ce qu'a reçu le joueur --pov (par défaut le premier arrivé). Pour revoir un incident.
+ * drive : une connexion par joueur enregistré renvoie ses messages à un vrai serveur, au même rythme.
+ *         Charge réaliste et reproductible pour mesurer le serveur, comme BotHarness mais rejouée.
+ */
+public class MatchReplay {
+    String file;
+    String mode = "serve";
+    // 0 : aussi vite que possible
+    double speed = 1;
+    String host = "localhost";
+    int port = 5555;
+    String pov;
+
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    // Heure enregistrée du message en cours, pour répondre aux PING des clients en temps de la partie
+    private volatile long replayTime;
+
+    public static void main(String[] args) throws Exception {
+        MatchReplay replay = parse(args);
+        MatchRecorder.Reader reader = new MatchRecorder.Reader(Path.of(replay.file));
+        if (replay.mode.equals("drive")) {
+            replay.drive(reader);
+        } else {
+            replay.serve(reader);
+        }
+    }
+
+    static MatchReplay parse(String[] args) {
+        MatchReplay replay = new MatchReplay();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                replay.file = arg;
+                continue;
+            }
+            if (!arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (key) {
+                case "mode":
+                    if (!value.equals("serve") && !value.equals("drive")) {
+                        throw new IllegalArgumentException("Unknown mode: " + value);
+                    }
+                    replay.mode = value;
+                    break;
+                case "speed":
+                    replay.speed = value.equals("max") ? 0 : Double.parseDouble(value);
+                    break;
+                case "host":
+                    replay.host = value;
+                    break;
+                case "port":
+                    replay.port = Integer.parseInt(value);
+                    break;
+                case "pov":
+                    replay.pov = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: --" + key);
+            }
+        }
+        if (replay.file == null) {
+            throw new IllegalArgumentException("Usage: MatchReplay <file.rec> [--mode=serve|drive] [--speed=1|4|max]");
+        }
+        return replay;
+    }
+
+    // Attend l'heure du message, relative au premier, au rythme demandé
+    private void pace(long startNanos, long firstTime, long time) throws InterruptedException {
+        replayTime = time;
+        if (speed <= 0) {
+            return;
+        }
+        long due = startNanos + (long) ((time - firstTime) * 1_000_000L / speed);
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+        }
+    }
+
+    private void serve(MatchRecorder.Reader reader) throws IOException, InterruptedException {
+        if (pov == null) {
+            for (MatchRecorder.Entry entry; (entry = reader.next()) != null; ) {
+                if (entry.direction == MatchRecorder.IN) {
+                    pov = entry.player;
+                    break;
+                }
+            }
+            reader.rewind();
+        }
+        List<Viewer> viewers = new CopyOnWriteArrayList<>();
+        ServerSocket serverSocket = new ServerSocket(port);
+        Thread acceptor = Thread.ofPlatform().daemon().name("replay-accept").start(() -> accept(serverSocket, viewers, reader.matchId));
+        System.out.printf("Replaying match %d as seen by %s on port %d, waiting for a client...%n", reader.matchId, pov, port);
+        while (viewers.isEmpty()) {
+            Thread.sleep(50);
+        }
+
+        long start = System.nanoTime();
+        long firstTime = -1;
+        for (MatchRecorder.Entry entry; (entry = reader.next()) != null; ) {
+            boolean toPov = entry.direction == MatchRecorder.OUT_ONE ? pov.equals(entry.player)
+                    : entry.direction == MatchRecorder.OUT_ALL && !pov.equals(entry.player);
+            // La poignée de main a déjà été rejouée par accept()
+            if (!toPov || "NAME_ACCEPTED".equals(entry.message.getChatContent())) {
+                continue;
+            }
+            if (firstTime < 0) {
+                firstTime = entry.time;
+            }
+            pace(start, firstTime, entry.time);
+            byte[] frame = MessageCodec.encode(entry.message);
+            for (Viewer viewer : viewers) {
+                if (!viewer.send(frame)) {
+                    viewers.remove(viewer);
+                }
+            }
+            messagesSent.increment();
+            bytesSent.add(frame.length);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Replayed %,d messages (%,d bytes) to %d clients in %.1f s (%,.0f msg/s)%n",
+                messagesSent.sum(), bytesSent.sum(), viewers.size(), seconds, messagesSent.sum() / seconds);
+        serverSocket.close();
+        acceptor.join();
+        for (Viewer viewer : viewers) {
+            viewer.close();
+        }
+    }
+
+    private void accept(ServerSocket serverSocket, List<Viewer> viewers, int matchId) {
+        while (!serverSocket.isClosed()) {
+            try {
+                Viewer viewer = new Viewer(serverSocket.accept());
+                Thread.ofVirtual().start(() -> viewer.run(viewers, matchId));
+            } catch (IOException e) {
+                // Socket d'écoute fermé en fin de rejeu
+            }
+        }
+    }
+
+    // Un client du jeu qui regarde le rejeu ; ses propres messages sont lus et ignorés, sauf les PING
+    private class Viewer {
+        final Socket socket;
+        final DataOutputStream out;
+
+        Viewer(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void run(List<Viewer> viewers, int matchId) {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                GameMessage join = MessageCodec.read(in);
+                System.out.println("Client " + join.getPlayerName() + " watching");
+                send(MessageCodec.encode(GameMessage.createChatMessage("SYSTEM", "NAME_ACCEPTED", matchId)));
+                send(MessageCodec.encode(GameMessage.createJoinAcceptedMessage(0, 0, matchId, 0)));
+                viewers.add(this);
+                while (true) {
+                    GameMessage message = MessageCodec.read(in);
+                    if (message.getType() == GameMessage.MessageType.PING) {
+                        send(MessageCodec.encode(GameMessage.createPongMessage(message.getClientTime(), replayTime)));
+                    }
+                }
+            } catch (IOException e) {
+                viewers.remove(this);
+                close();
+            }
+        }
+
+        synchronized boolean send(byte[] frame) {
+            try {
+                out.write(frame);
+                out.flush();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Déjà fermé
+            }
+        }
+    }
+
+    private void drive(MatchRecorder.Reader reader) throws IOException, InterruptedException {
+        System.out.printf("Driving %s:%d with match %d at %s%n", host, port, reader.matchId,
+                speed <= 0 ? "max speed" : speed + "x");
+        Map<String, DataOutputStream> connections = new HashMap<>();
+        List<Socket> sockets = new CopyOnWriteArrayList<>();
+        long start = System.nanoTime();
+        long firstTime = -1;
+        for (MatchRecorder.Entry entry; (entry = reader.next()) != null; ) {
+            // Les PONG répondaient aux PING du serveur d'origine : ils fausseraient le RTT mesuré
+            if (entry.direction != MatchRecorder.IN || entry.message.getType() == GameMessage.MessageType.PONG) {
+                continue;
+            }
+            if (firstTime < 0) {
+                firstTime = entry.time;
+            }
+            pace(start, firstTime, entry.time);
+            DataOutputStream out = connections.get(entry.player);
+            if (out == null) {
+                if (entry.message.getType() != GameMessage.MessageType.PLAYER_JOIN) {
+                    continue;
+                }
+                Socket socket = new Socket();
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(host, port));
+                sockets.add(socket);
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                connections.put(entry.player, out);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                Thread.ofVirtual().start(() -> drain(in));
+            }
+            try {
+                bytesSent.add(MessageCodec.write(out, entry.message));
+                out.flush();
+                messagesSent.increment();
+            } catch (IOException e) {
+                System.err.println("Player " + entry.player + " disconnected: " + e.getMessage());
+                connections.put(entry.player, new DataOutputStream(OutputStream.nullOutputStream()));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Sent %,d messages (%,d bytes) for %d players in %.1f s (%,.0f msg/s), received %,d%n",
+                messagesSent.sum(), bytesSent.sum(), connections.size(), seconds, messagesSent.sum() / seconds,
+                messagesReceived.sum());
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private void drain(DataInputStream in) {
+        try {
+            while (true) {
+                MessageCodec.read(in);
+                messagesReceived.increment();
+            }
+        } catch (IOException e) {
+            // Connexion fermée
+        }
+    }
+}
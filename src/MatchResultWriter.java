@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Enregistre en base le résultat de chaque manche terminée (participants, scores, vainqueur, durée),
+ * sans jamais faire attendre le tick ni la diffusion : la partie ne fait que déposer le résultat dans
+ * une file bornée, vidée par un thread virtuel.
+ *
+ * Les résultats arrivés ensemble sont écrits en un seul lot JDBC, dans une transaction. Si la base est
+ * lente ou absente, la file se remplit puis les résultats suivants sont abandonnés (comptés) plutôt
+ * que d'accumuler de la mémoire ; un lot refusé est retenté quelques fois avant d'être abandonné.
+ */
+class MatchResultWriter {
+    private static final int QUEUE_CAPACITY = 1024;
+    // Borne la taille d'une transaction quand beaucoup de parties finissent en même temps
+    private static final int MAX_BATCH = 256;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    static final LongAdder totalSaved = new LongAdder();
+    static final LongAdder totalDropped = new LongAdder();
+
+    // Une manche terminée ; winner null si elle s'est terminée sans survivant
+    static class Result {
+        final int matchId;
+        final int round;
+        final String winner;
+        final long durationMillis;
+        final List<GameMessage.PlayerState> participants;
+
+        Result(int matchId, int round, String winner, long durationMillis, List<GameMessage.PlayerState> participants) {
+            this.matchId = matchId;
+            this.round = round;
+            this.winner = winner;
+            this.durationMillis = durationMillis;
+            this.participants = participants;
+        }
+    }
+
+    private final BlockingQueue<Result> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    static MatchResultWriter start() {
+        MatchResultWriter writer = new MatchResultWriter();
+        Thread.ofVirtual().name("match-results").start(writer::writeLoop);
+        return writer;
+    }
+
+    // Sans attente ; le résultat est perdu si la file est pleine
+    void submit(Result result) {
+        if (!queue.offer(result)) {
+            totalDropped.increment();
+            System.err.println("Result queue full, match " + result.matchId + " not saved");
+        }
+    }
+
+    private void writeLoop() {
+        List<Result> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(List<Result> batch) throws InterruptedException {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (GestionBaseDonnees.saveMatchResults(batch)) {
+                totalSaved.add(batch.size());
+                return;
+            }
+            if (attempt < MAX_ATTEMPTS) {
+                Thread.sleep(RETRY_DELAY_MS * attempt);
+            }
+        }
+        totalDropped.add(batch.size());
+        System.err.println("Could not save " + batch.size() + " match results, giving up");
+    }
+}
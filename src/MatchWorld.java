@@ -0,0 +1,313 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Ennemis et projectiles d'une partie, simulés par le serveur à chaque tick.
+ *
+ * Tout se déplace verticalement à vitesse constante : une entité est entièrement décrite par sa
+ * position et son heure d'apparition, que le client reçoit une seule fois dans un ENEMY_UPDATE.
+ * Seuls les apparitions, les dégâts et les destructions sur impact sont transmis ; une entité qui
+ * sort de l'écran disparaît des deux côtés sans message.
+ *
+ * Les ennemis tombent dans le repère commun à tous les joueurs (chacun se voit en bas de l'écran).
+ * Un projectile est exprimé dans le repère de son tireur, où les adversaires sont affichés en miroir.
+ * Les collisions sont testées sur le trajet parcouru depuis le tick précédent, pour qu'un projectile
+ * rapide ne traverse pas un ennemi entre deux ticks, et seulement contre les ennemis de sa colonne.
+ * Contre un adversaire, le projectile est comparé à la position que son tireur voyait (compensation de
+ * latence) : celle de l'historique du joueur, rembobiné du retard du tireur calculé au moment du tir.
+ */
+class MatchWorld {
+    // Conséquences d'une collision, appliquées par la partie à l'état des joueurs
+    interface Listener {
+        void playerHit(String name);
+
+        void enemyKilled(String owner, int points);
+    }
+
+    static final int ARENA_WIDTH = 800;
+    static final int ARENA_HEIGHT = 600;
+    // Durée d'un pas de la boucle Swing, dans laquelle les vitesses du jeu solo sont exprimées
+    private static final int FRAME_MS = 16;
+    private static final int SCROLL_SPEED = 2;
+    private static final int PROJECTILE_SPEED = 10;
+    private static final int PROJECTILE_WIDTH = 5;
+    private static final int PROJECTILE_HEIGHT = 15;
+    private static final int PLAYER_WIDTH = 50;
+    private static final int PLAYER_HEIGHT = 60;
+    private static final int COLUMN_WIDTH = 64;
+    private static final int COLUMNS = ARENA_WIDTH / COLUMN_WIDTH + 1;
+    // Difficulté des parties multijoueur (celle du niveau 1 en solo)
+    private static final int DIFFICULTY = 1;
+
+    private static class Entity {
+        final int id;
+        final int kind;
+        final String owner;
+        final int x, y;
+        final int vy;
+        final long spawnTime;
+        final int width, height;
+        int health;
+        // Projectiles : retard en ms avec lequel le tireur voit ses adversaires
+        int rewindMillis;
+        // Position au tick précédent : les collisions couvrent tout le trajet depuis
+        double lastY;
+        double currentY;
+
+        Entity(int id, int kind, String owner, int x, int y, int vy, long spawnTime, int width, int height, int health) {
+            this.id = id;
+            this.kind = kind;
+            this.owner = owner;
+            this.x = x;
+            this.y = y;
+            this.vy = vy;
+            this.spawnTime = spawnTime;
+            this.width = width;
+            this.height = height;
+            this.health = health;
+            this.lastY = y;
+        }
+
+        double yAt(long time) {
+            return y + vy * (time - spawnTime) / 1000.0;
+        }
+
+        boolean overlapsX(int left, int width) {
+            return x < left + width && left < x + this.width;
+        }
+
+        GameMessage.EntityState toState() {
+            return new GameMessage.EntityState(id, kind, owner, x, y, vy, spawnTime, health);
+        }
+    }
+
+    private static class Shot {
+        final String owner;
+        final int x, y;
+        final long time;
+        final int rewindMillis;
+
+        Shot(String owner, int x, int y, long time, int rewindMillis) {
+            this.owner = owner;
+            this.x = x;
+            this.y = y;
+            this.time = time;
+            this.rewindMillis = rewindMillis;
+        }
+    }
+
+    private final long spawnIntervalMs;
+    private final int enemyBaseSpeed;
+    private final Random random;
+    // Tirs reçus par les threads de lecture, intégrés au tick suivant
+    private final Queue<Shot> pendingShots = new ConcurrentLinkedQueue<>();
+    // Le reste n'est touché que par le thread du tick
+    private final List<Entity> enemies = new ArrayList<>();
+    private final List<Entity> projectiles = new ArrayList<>();
+    private final List<List<Entity>> columns = new ArrayList<>(COLUMNS);
+    private final List<GameMessage.EntityState> changed = new ArrayList<>();
+    private final List<Integer> removed = new ArrayList<>();
+    // Position rembobinée d'un adversaire, réutilisée d'un test à l'autre
+    private final int[] rewound = new int[2];
+    private int nextId = 1;
+    private long nextSpawnTime = -1;
+    private long lastStepTime = -1;
+
+    MatchWorld() {
+        this(levelSpawnInterval(), new Gestionniveux(DIFFICULTY).getEnemySpeed(), new Random());
+    }
+
+    MatchWorld(long spawnIntervalMs, int enemyBaseSpeed, Random random) {
+        this.spawnIntervalMs = spawnIntervalMs;
+        this.enemyBaseSpeed = enemyBaseSpeed;
+        this.random = random;
+        for (int i = 0; i < COLUMNS; i++) {
+            columns.add(new ArrayList<>());
+        }
+    }
+
+    private static long levelSpawnInterval() {
+        return (long) new Gestionniveux(DIFFICULTY).getAdjustedSpawnInterval() * FRAME_MS;
+    }
+
+    // Appelé par les threads de lecture : (x, y) est le centre du canon dans le repère du tireur
+    void spawnProjectile(String owner, int x, int y, long time, int rewindMillis) {
+        pendingShots.add(new Shot(owner, x, y, time, rewindMillis));
+    }
+
+    /*
+     * Avance la simulation jusqu'à now. Les entités apparues ou endommagées et celles détruites par
+     * un impact sont ensuite disponibles dans getChanged() et getRemoved() jusqu'au pas suivant.
+     */
+    void step(long now, List<Match.Player> players, Listener listener) {
+        changed.clear();
+        removed.clear();
+        long previous = lastStepTime < 0 ? now : lastStepTime;
+        lastStepTime = now;
+
+        spawnEnemies(now);
+        Shot shot;
+        while ((shot = pendingShots.poll()) != null) {
+            // Un tir arrivé entre deux ticks part de son heure de réception, bornée au dernier pas
+            long spawnTime = Math.max(previous, Math.min(now, shot.time));
+            Entity projectile = new Entity(nextId++, GameMessage.KIND_PROJECTILE, shot.owner,
+                    shot.x - PROJECTILE_WIDTH / 2, shot.y, -PROJECTILE_SPEED * 1000 / FRAME_MS, spawnTime,
+                    PROJECTILE_WIDTH, PROJECTILE_HEIGHT, 1);
+            projectile.rewindMillis = shot.rewindMillis;
+            projectiles.add(projectile);
+            changed.add(projectile.toState());
+        }
+
+        for (List<Entity> column : columns) {
+            column.clear();
+        }
+        for (Entity enemy : enemies) {
+            enemy.currentY = enemy.yAt(now);
+            for (int c = column(enemy.x); c <= column(enemy.x + enemy.width - 1); c++) {
+                columns.get(c).add(enemy);
+            }
+        }
+
+        for (Entity projectile : projectiles) {
+            projectile.currentY = projectile.yAt(now);
+            // Trajet du projectile (vers le haut) depuis le tick précédent
+            double top = projectile.currentY;
+            double bottom = projectile.lastY + projectile.height;
+            if (!hitEnemy(projectile, top, bottom, listener)) {
+                hitPlayer(projectile, top, bottom, now - projectile.rewindMillis, players, listener);
+            }
+        }
+
+        for (Entity enemy : enemies) {
+            if (enemy.health <= 0) {
+                continue;
+            }
+            // Trajet de l'ennemi (vers le bas) depuis le tick précédent
+            double top = enemy.lastY;
+            double bottom = enemy.currentY + enemy.height;
+            for (Match.Player player : players) {
+                GameMessage.PlayerState state = player.state.get();
+                if (state.getHealth() > 0 && enemy.overlapsX(state.getX(), PLAYER_WIDTH)
+                        && top < state.getY() + PLAYER_HEIGHT && state.getY() < bottom) {
+                    enemy.health = 0;
+                    removed.add(enemy.id);
+                    listener.playerHit(player.name);
+                    break;
+                }
+            }
+        }
+
+        enemies.removeIf(enemy -> enemy.health <= 0 || enemy.currentY > ARENA_HEIGHT);
+        projectiles.removeIf(projectile -> projectile.health <= 0 || projectile.currentY < 0);
+        for (Entity enemy : enemies) {
+            enemy.lastY = enemy.currentY;
+        }
+        for (Entity projectile : projectiles) {
+            projectile.lastY = projectile.currentY;
+        }
+    }
+
+    private void spawnEnemies(long now) {
+        if (nextSpawnTime < 0 || now - nextSpawnTime > 1000) {
+            // Premier tick, ou tick très en retard : on ne rattrape pas les apparitions manquées
+            nextSpawnTime = now;
+        }
+        while (nextSpawnTime <= now) {
+            int type = random.nextInt(3);
+            int size = Enemy.sizeOf(type);
+            int vy = (Enemy.speedOf(type, enemyBaseSpeed) + SCROLL_SPEED) * 1000 / FRAME_MS;
+            Entity enemy = new Entity(nextId++, type, null, random.nextInt(ARENA_WIDTH - 50), -50, vy,
+                    nextSpawnTime, size, size, Enemy.healthOf(type));
+            enemy.lastY = enemy.y;
+            enemies.add(enemy);
+            changed.add(enemy.toState());
+            nextSpawnTime += spawnIntervalMs;
+        }
+    }
+
+    private boolean hitEnemy(Entity projectile, double top, double bottom, Listener listener) {
+        for (int c = column(projectile.x); c <= column(projectile.x + projectile.width - 1); c++) {
+            for (Entity enemy : columns.get(c)) {
+                if (enemy.health <= 0 || !enemy.overlapsX(projectile.x, projectile.width)) {
+                    continue;
+                }
+                // Les deux se rapprochent : ils se sont croisés si leurs trajets se recouvrent
+                if (top < enemy.currentY + enemy.height && enemy.lastY < bottom) {
+                    projectile.health = 0;
+                    removed.add(projectile.id);
+                    enemy.health--;
+                    if (enemy.health <= 0) {
+                        removed.add(enemy.id);
+                        listener.enemyKilled(projectile.owner, Enemy.pointsOf(enemy.kind));
+                    } else {
+                        changed.add(enemy.toState());
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Dans le repère du tireur, un adversaire en (x, y) est affiché en miroir, en haut de l'écran, tel qu'il était à viewTime
+    private void hitPlayer(Entity projectile, double top, double bottom, long viewTime, List<Match.Player> players,
+                           Listener listener) {
+        for (Match.Player player : players) {
+            if (player.name.equals(projectile.owner)) {
+                continue;
+            }
+            GameMessage.PlayerState state = player.state.get();
+            if (state.getHealth() <= 0) {
+                continue;
+            }
+            int x = state.getX();
+            int y = state.getY();
+            if (projectile.rewindMillis > 0 && player.history.sample(viewTime, rewound)) {
+                x = rewound[0];
+                y = rewound[1];
+            }
+            int mirroredY = ARENA_HEIGHT - y - PLAYER_HEIGHT;
+            if (projectile.overlapsX(x, PLAYER_WIDTH) && top < mirroredY + PLAYER_HEIGHT && mirroredY < bottom) {
+                projectile.health = 0;
+                removed.add(projectile.id);
+                listener.playerHit(player.name);
+                return;
+            }
+        }
+    }
+
+    private static int column(int x) {
+        return Math.max(0, Math.min(COLUMNS - 1, Math.floorDiv(x, COLUMN_WIDTH)));
+    }
+
+    // Toutes les entités vivantes, pour un client qui arrive en cours de partie
+    List<GameMessage.EntityState> snapshot() {
+        List<GameMessage.EntityState> states = new ArrayList<>(enemies.size() + projectiles.size());
+        for (Entity enemy : enemies) {
+            states.add(enemy.toState());
+        }
+        for (Entity projectile : projectiles) {
+            states.add(projectile.toState());
+        }
+        return states;
+    }
+
+    List<GameMessage.EntityState> getChanged() {
+        return changed;
+    }
+
+    List<Integer> getRemoved() {
+        return removed;
+    }
+
+    int getEnemyCount() {
+        return enemies.size();
+    }
+
+    int getProjectileCount() {
+        return projectiles.size();
+    }
+}
@@ -0,0 +1,551 @@
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Codec binaire compact pour {@link GameMessage}.
+ *
+ * Format d'une trame : [longueur u16][type u8][champs...]. La longueur couvre le type et les champs.
+ * Les entiers sont écrits en varint zigzag et les chaînes en UTF-8 préfixées par leur longueur ;
+ * seuls les champs réellement utilisés par chaque type de message sont transmis.
+ * Les états de joueur (PLAYER_POSITION, entrées de GAME_STATE) commencent par un masque d'un octet
+ * et ne portent que les champs qu'il désigne.
+ *
+ * Une diffusion n'encode son message qu'une fois ({@link #share}) : la trame, en lecture seule et hors
+ * du tas, est ensuite recopiée telle quelle par chaque destinataire au lieu d'être réencodée.
+ */
+public final class MessageCodec {
+    public static final int LENGTH_PREFIX = 2;
+    public static final int MAX_FRAME_SIZE = 0xFFFF;
+    // Datagramme UDP : [session i32][séquence i32][trame]
+    public static final int DATAGRAM_HEADER = 8;
+    // Sous le MTU courant, pour éviter la fragmentation IP ; au-delà la trame passe par TCP
+    public static final int MAX_DATAGRAM_SIZE = 1200;
+
+    private static final GameMessage.MessageType[] TYPES = GameMessage.MessageType.values();
+    // Tampon d'encodage de chaque thread : petit au départ, agrandi seulement par les messages qui ne
+    // tiennent pas (instantanés de parties nombreuses), jamais réservé d'emblée à la taille maximale
+    private static final int SCRATCH_SIZE = 256;
+    private static final ThreadLocal<ByteBuffer> SCRATCH =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(SCRATCH_SIZE));
+    // Les trames partagées sont découpées dans une tranche hors tas commune à tous les threads, libérée
+    // par le ramasse-miettes quand plus aucune trame n'y fait référence
+    private static final int SLAB_SIZE = 1 << 20;
+    private static final AtomicReference<Slab> slab = new AtomicReference<>(new Slab());
+
+    private static class Slab {
+        final ByteBuffer memory = ByteBuffer.allocateDirect(SLAB_SIZE);
+        final AtomicInteger used = new AtomicInteger();
+    }
+
+    private MessageCodec() {
+    }
+
+    // Encode une trame complète (préfixe de longueur inclus) dans un nouveau tableau
+    public static byte[] encode(GameMessage msg) {
+        ByteBuffer buf = encodeToScratch(msg);
+        byte[] frame = new byte[buf.position()];
+        buf.flip();
+        buf.get(frame);
+        return frame;
+    }
+
+    // Encode une trame complète à la position courante du buffer
+    public static void encode(GameMessage msg, ByteBuffer dst) {
+        try {
+            encodeFrame(msg, dst);
+        } catch (BufferOverflowException e) {
+            throw new IllegalArgumentException("Message too large: " + msg.getType());
+        }
+    }
+
+    // Idem ; BufferOverflowException si la trame ne tient pas dans dst, seul cas où un tampon plus grand suffirait
+    private static void encodeFrame(GameMessage msg, ByteBuffer dst) {
+        ByteBuffer shared = msg.getSharedFrame();
+        if (shared != null) {
+            int length = shared.limit();
+            if (dst.remaining() < length) {
+                throw new BufferOverflowException();
+            }
+            dst.put(dst.position(), shared, 0, length);
+            dst.position(dst.position() + length);
+            return;
+        }
+        int start = dst.position();
+        dst.position(start + LENGTH_PREFIX);
+        dst.put((byte) msg.getType().ordinal());
+        writeBody(msg, dst);
+        int length = dst.position() - start - LENGTH_PREFIX;
+        if (length > MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("Message too large: " + msg.getType());
+        }
+        dst.putShort(start, (short) length);
+    }
+
+    // Encode le message une fois pour tous les destinataires d'une diffusion ; retourne le message
+    static GameMessage share(GameMessage msg) {
+        if (msg.getSharedFrame() == null) {
+            ByteBuffer buf = encodeToScratch(msg);
+            buf.flip();
+            msg.setSharedFrame(copyToSlab(buf));
+        }
+        return msg;
+    }
+
+    // Encode dans le tampon du thread, doublé tant que la trame n'y tient pas
+    private static ByteBuffer encodeToScratch(GameMessage msg) {
+        ByteBuffer buf = SCRATCH.get();
+        while (true) {
+            buf.clear();
+            try {
+                encodeFrame(msg, buf);
+                return buf;
+            } catch (BufferOverflowException e) {
+                if (buf.capacity() >= LENGTH_PREFIX + MAX_FRAME_SIZE) {
+                    throw new IllegalArgumentException("Message too large: " + msg.getType());
+                }
+                buf = ByteBuffer.allocate(Math.min(buf.capacity() * 2, LENGTH_PREFIX + MAX_FRAME_SIZE));
+                SCRATCH.set(buf);
+            }
+        }
+    }
+
+    // Réserve la place par un simple incrément ; une tranche pleine est remplacée par une nouvelle
+    private static ByteBuffer copyToSlab(ByteBuffer frame) {
+        int length = frame.remaining();
+        while (true) {
+            Slab current = slab.get();
+            int offset = current.used.getAndAdd(length);
+            if (offset + length <= SLAB_SIZE) {
+                current.memory.put(offset, frame, frame.position(), length);
+                return current.memory.slice(offset, length).asReadOnlyBuffer();
+            }
+            slab.compareAndSet(current, new Slab());
+        }
+    }
+
+    // Retourne la taille de la trame écrite, préfixe compris
+    public static int write(OutputStream out, GameMessage msg) throws IOException {
+        ByteBuffer buf = encodeToScratch(msg);
+        out.write(buf.array(), 0, buf.position());
+        return buf.position();
+    }
+
+    // Encode un datagramme complet dans dst (vidé au préalable) ; false s'il dépasse MAX_DATAGRAM_SIZE
+    public static boolean encodeDatagram(int sessionId, int seq, GameMessage msg, ByteBuffer dst) {
+        dst.clear();
+        dst.putInt(sessionId);
+        dst.putInt(seq);
+        encode(msg, dst);
+        if (dst.position() > MAX_DATAGRAM_SIZE) {
+            return false;
+        }
+        dst.flip();
+        return true;
+    }
+
+    // Décode la trame d'un datagramme, en-tête déjà lu
+    public static GameMessage decodeDatagramFrame(ByteBuffer src) throws ProtocolException {
+        if (src.remaining() < LENGTH_PREFIX) {
+            throw new ProtocolException("Truncated datagram");
+        }
+        int length = src.getShort() & 0xFFFF;
+        if (length == 0 || length > src.remaining()) {
+            throw new ProtocolException("Invalid datagram frame length: " + length);
+        }
+        return decode(src.slice(src.position(), length));
+    }
+
+    // Lit une trame complète ; EOFException si le flux est fermé
+    public static GameMessage read(DataInputStream in) throws IOException {
+        return read(in, null);
+    }
+
+    // Idem, en comptant la trame dans stats (si non null)
+    public static GameMessage read(DataInputStream in, NetStats stats) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length == 0) {
+            throw new ProtocolException("Empty frame");
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        GameMessage message = decode(ByteBuffer.wrap(body));
+        if (stats != null) {
+            stats.recordIn(message.getType(), LENGTH_PREFIX + length);
+        }
+        return message;
+    }
+
+    // Décode le corps d'une trame (type + champs), sans le préfixe de longueur
+    public static GameMessage decode(ByteBuffer body) throws ProtocolException {
+        try {
+            int ordinal = body.get() & 0xFF;
+            if (ordinal >= TYPES.length) {
+                throw new ProtocolException("Unknown message type: " + ordinal);
+            }
+            return readBody(TYPES[ordinal], body);
+        } catch (BufferUnderflowException e) {
+            throw new ProtocolException("Truncated frame");
+        }
+    }
+
+    private static void writeBody(GameMessage msg, ByteBuffer dst) {
+        switch (msg.getType()) {
+            case PLAYER_POSITION:
+                writeString(dst, msg.getPlayerName());
+                writeFields(dst, msg.getFields(), msg.getX(), msg.getY(), msg.getHealth(), msg.getScore());
+                break;
+            case PLAYER_SHOOT:
+                writeString(dst, msg.getPlayerName());
+                writeVarInt(dst, msg.getProjectileX());
+                writeVarInt(dst, msg.getProjectileY());
+                break;
+            case PLAYER_HIT:
+                writeString(dst, msg.getPlayerName());
+                break;
+            case CHAT_MESSAGE:
+                writeString(dst, msg.getPlayerName());
+                writeString(dst, msg.getChatContent());
+                writeVarInt(dst, msg.getMatchId());
+                break;
+            case PLAYER_JOIN:
+                writeString(dst, msg.getPlayerName());
+                writeVarInt(dst, msg.getShipType());
+                writeVarInt(dst, msg.getMatchId());
+                break;
+            case GAME_OVER:
+                writeString(dst, msg.getPlayerName());
+                dst.put((byte) (msg.isWinner() ? 1 : 0));
+                writeVarInt(dst, msg.getScore());
+                writeVarInt(dst, msg.getMatchId());
+                break;
+            case JOIN_ACCEPTED:
+                writeVarInt(dst, msg.getSessionId());
+                writeVarInt(dst, msg.getUdpPort());
+                writeVarInt(dst, msg.getMatchId());
+                writeVarInt(dst, msg.getTickRate());
+                break;
+            case PING:
+                writeVarLong(dst, msg.getClientTime());
+                break;
+            case PONG:
+                writeVarLong(dst, msg.getClientTime());
+                writeVarLong(dst, msg.getServerTime());
+                break;
+            case GAME_STATE:
+                writeVarInt(dst, msg.getTick());
+                writeVarLong(dst, msg.getServerTime());
+                writeVarInt(dst, msg.getPlayerStates().size());
+                for (GameMessage.PlayerState state : msg.getPlayerStates()) {
+                    writeString(dst, state.getName());
+                    writeFields(dst, state.getFields(), state.getX(), state.getY(), state.getHealth(), state.getScore());
+                }
+                break;
+            case ENEMY_UPDATE:
+                writeVarInt(dst, msg.getTick());
+                writeVarLong(dst, msg.getServerTime());
+                writeVarInt(dst, msg.getEntityStates().size());
+                for (GameMessage.EntityState state : msg.getEntityStates()) {
+                    writeEntity(dst, state, msg.getServerTime());
+                }
+                writeVarInt(dst, msg.getRemovedIds().size());
+                for (int id : msg.getRemovedIds()) {
+                    writeVarInt(dst, id);
+                }
+                break;
+            case ROSTER_UPDATE:
+                writeVarInt(dst, msg.getRosterVersion());
+                dst.put((byte) msg.getRosterOp());
+                writeVarInt(dst, msg.getRosterEntries().size());
+                for (GameMessage.RosterEntry entry : msg.getRosterEntries()) {
+                    writeString(dst, entry.getName());
+                    writeVarInt(dst, entry.getShipType());
+                    dst.put((byte) (entry.isAlive() ? 1 : 0));
+                }
+                break;
+            case MATCH_SNAPSHOT:
+                // Chaque joueur une seule fois : entrée de la liste puis tous ses champs, sans masque
+                writeVarInt(dst, msg.getTick());
+                writeVarLong(dst, msg.getServerTime());
+                writeVarInt(dst, msg.getRosterVersion());
+                writeVarInt(dst, msg.getRosterEntries().size());
+                for (int i = 0; i < msg.getRosterEntries().size(); i++) {
+                    GameMessage.RosterEntry entry = msg.getRosterEntries().get(i);
+                    GameMessage.PlayerState state = msg.getPlayerStates().get(i);
+                    writeString(dst, entry.getName());
+                    writeVarInt(dst, entry.getShipType());
+                    dst.put((byte) (entry.isAlive() ? 1 : 0));
+                    writeVarInt(dst, state.getX());
+                    writeVarInt(dst, state.getY());
+                    writeVarInt(dst, state.getHealth());
+                    writeVarInt(dst, state.getScore());
+                }
+                writeVarInt(dst, msg.getEntityStates().size());
+                for (GameMessage.EntityState state : msg.getEntityStates()) {
+                    writeEntity(dst, state, msg.getServerTime());
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported message type: " + msg.getType());
+        }
+    }
+
+    private static GameMessage readBody(GameMessage.MessageType type, ByteBuffer src) throws ProtocolException {
+        switch (type) {
+            case PLAYER_POSITION: {
+                GameMessage.PlayerState state = readState(src);
+                return GameMessage.createPositionDelta(state.getName(), state.getFields(), state.getX(), state.getY(),
+                        state.getHealth(), state.getScore(), 0);
+            }
+            case PLAYER_SHOOT: {
+                String name = readString(src);
+                int x = readVarInt(src);
+                int y = readVarInt(src);
+                return GameMessage.createShootMessage(name, x, y, 0);
+            }
+            case PLAYER_HIT:
+                return GameMessage.createHitMessage(readString(src), 0);
+            case CHAT_MESSAGE: {
+                String name = readString(src);
+                String content = readString(src);
+                return GameMessage.createChatMessage(name, content, readVarInt(src));
+            }
+            case PLAYER_JOIN: {
+                String name = readString(src);
+                int shipType = readVarInt(src);
+                return GameMessage.createJoinMessage(name, shipType, readVarInt(src));
+            }
+            case GAME_OVER: {
+                String name = readString(src);
+                boolean winner = src.get() != 0;
+                int score = readVarInt(src);
+                return GameMessage.createGameOverMessage(name, winner, score, readVarInt(src));
+            }
+            case JOIN_ACCEPTED: {
+                int sessionId = readVarInt(src);
+                int udpPort = readVarInt(src);
+                int acceptedMatchId = readVarInt(src);
+                return GameMessage.createJoinAcceptedMessage(sessionId, udpPort, acceptedMatchId, readVarInt(src));
+            }
+            case PING:
+                return GameMessage.createPingMessage(readVarLong(src));
+            case PONG: {
+                long clientTime = readVarLong(src);
+                return GameMessage.createPongMessage(clientTime, readVarLong(src));
+            }
+            case GAME_STATE: {
+                int tick = readVarInt(src);
+                long serverTime = readVarLong(src);
+                int count = readVarInt(src);
+                if (count < 0 || count > src.remaining()) {
+                    throw new ProtocolException("Invalid player count: " + count);
+                }
+                List<GameMessage.PlayerState> states = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    states.add(readState(src));
+                }
+                return GameMessage.createGameStateMessage(tick, serverTime, states, 0);
+            }
+            case ENEMY_UPDATE: {
+                int tick = readVarInt(src);
+                long serverTime = readVarLong(src);
+                int count = readVarInt(src);
+                if (count < 0 || count > src.remaining()) {
+                    throw new ProtocolException("Invalid entity count: " + count);
+                }
+                List<GameMessage.EntityState> entities = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    entities.add(readEntity(src, serverTime));
+                }
+                int removedCount = readVarInt(src);
+                if (removedCount < 0 || removedCount > src.remaining()) {
+                    throw new ProtocolException("Invalid removal count: " + removedCount);
+                }
+                List<Integer> removed = new ArrayList<>(removedCount);
+                for (int i = 0; i < removedCount; i++) {
+                    removed.add(readVarInt(src));
+                }
+                return GameMessage.createEnemyUpdateMessage(tick, serverTime, entities, removed, 0);
+            }
+            case ROSTER_UPDATE: {
+                int version = readVarInt(src);
+                int op = src.get() & 0xFF;
+                if (op > GameMessage.ROSTER_CHANGE) {
+                    throw new ProtocolException("Invalid roster operation: " + op);
+                }
+                int count = readVarInt(src);
+                if (count < 0 || count > src.remaining()) {
+                    throw new ProtocolException("Invalid roster size: " + count);
+                }
+                List<GameMessage.RosterEntry> entries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    String name = readString(src);
+                    int shipType = readVarInt(src);
+                    entries.add(new GameMessage.RosterEntry(name, shipType, src.get() != 0));
+                }
+                return GameMessage.createRosterMessage(version, op, entries, 0);
+            }
+            case MATCH_SNAPSHOT: {
+                int tick = readVarInt(src);
+                long serverTime = readVarLong(src);
+                int version = readVarInt(src);
+                int count = readVarInt(src);
+                if (count < 0 || count > src.remaining()) {
+                    throw new ProtocolException("Invalid roster size: " + count);
+                }
+                List<GameMessage.RosterEntry> entries = new ArrayList<>(count);
+                List<GameMessage.PlayerState> states = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    String name = readString(src);
+                    int shipType = readVarInt(src);
+                    entries.add(new GameMessage.RosterEntry(name, shipType, src.get() != 0));
+                    int x = readVarInt(src);
+                    int y = readVarInt(src);
+                    int health = readVarInt(src);
+                    states.add(new GameMessage.PlayerState(name, x, y, health, readVarInt(src)));
+                }
+                int entityCount = readVarInt(src);
+                if (entityCount < 0 || entityCount > src.remaining()) {
+                    throw new ProtocolException("Invalid entity count: " + entityCount);
+                }
+                List<GameMessage.EntityState> entities = new ArrayList<>(entityCount);
+                for (int i = 0; i < entityCount; i++) {
+                    entities.add(readEntity(src, serverTime));
+                }
+                return GameMessage.createMatchSnapshotMessage(tick, serverTime, version, entries, states, entities, 0);
+            }
+            default:
+                throw new ProtocolException("Unsupported message type: " + type);
+        }
+    }
+
+    private static void writeFields(ByteBuffer dst, int fields, int x, int y, int health, int score) {
+        dst.put((byte) fields);
+        if ((fields & GameMessage.FIELD_X) != 0) writeVarInt(dst, x);
+        if ((fields & GameMessage.FIELD_Y) != 0) writeVarInt(dst, y);
+        if ((fields & GameMessage.FIELD_HEALTH) != 0) writeVarInt(dst, health);
+        if ((fields & GameMessage.FIELD_SCORE) != 0) writeVarInt(dst, score);
+    }
+
+    // Nom, masque puis champs présents ; les champs absents valent 0 et ne doivent pas être appliqués
+    private static GameMessage.PlayerState readState(ByteBuffer src) throws ProtocolException {
+        String name = readString(src);
+        int fields = src.get() & 0xFF;
+        if ((fields & ~GameMessage.ALL_FIELDS) != 0) {
+            throw new ProtocolException("Invalid field mask: " + fields);
+        }
+        int x = (fields & GameMessage.FIELD_X) != 0 ? readVarInt(src) : 0;
+        int y = (fields & GameMessage.FIELD_Y) != 0 ? readVarInt(src) : 0;
+        int health = (fields & GameMessage.FIELD_HEALTH) != 0 ? readVarInt(src) : 0;
+        int score = (fields & GameMessage.FIELD_SCORE) != 0 ? readVarInt(src) : 0;
+        return new GameMessage.PlayerState(name, fields, x, y, health, score);
+    }
+
+    // Identifiant, type, tireur (projectiles seulement), position d'apparition, vitesse, âge relatif au message, vie
+    private static void writeEntity(ByteBuffer dst, GameMessage.EntityState state, long serverTime) {
+        writeVarInt(dst, state.getId());
+        dst.put((byte) state.getKind());
+        if (state.getKind() == GameMessage.KIND_PROJECTILE) {
+            writeString(dst, state.getOwner());
+        }
+        writeVarInt(dst, state.getX());
+        writeVarInt(dst, state.getY());
+        writeVarInt(dst, state.getVy());
+        writeVarLong(dst, serverTime - state.getSpawnTime());
+        writeVarInt(dst, state.getHealth());
+    }
+
+    private static GameMessage.EntityState readEntity(ByteBuffer src, long serverTime) throws ProtocolException {
+        int id = readVarInt(src);
+        int kind = src.get() & 0xFF;
+        if (kind > GameMessage.KIND_PROJECTILE) {
+            throw new ProtocolException("Invalid entity kind: " + kind);
+        }
+        String owner = kind == GameMessage.KIND_PROJECTILE ? readString(src) : null;
+        int x = readVarInt(src);
+        int y = readVarInt(src);
+        int vy = readVarInt(src);
+        long age = readVarLong(src);
+        return new GameMessage.EntityState(id, kind, owner, x, y, vy, serverTime - age, readVarInt(src));
+    }
+
+    // Varint zigzag : les petites valeurs (positives ou négatives) tiennent sur 1 ou 2 octets
+    static void writeVarInt(ByteBuffer dst, int value) {
+        int v = (value << 1) ^ (value >> 31);
+        while ((v & ~0x7F) != 0) {
+            dst.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        dst.put((byte) v);
+    }
+
+    static int readVarInt(ByteBuffer src) throws ProtocolException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = src.get();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new ProtocolException("Malformed varint");
+    }
+
+    static void writeVarLong(ByteBuffer dst, long value) {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            dst.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        dst.put((byte) v);
+    }
+
+    static long readVarLong(ByteBuffer src) throws ProtocolException {
+        long v = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = src.get();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new ProtocolException("Malformed varint");
+    }
+
+    static void writeString(ByteBuffer dst, String value) {
+        if (value == null) {
+            writeVarInt(dst, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(dst, bytes.length);
+        dst.put(bytes);
+    }
+
+    static String readString(ByteBuffer src) throws ProtocolException {
+        int length = readVarInt(src);
+        if (length < 0) {
+            return null;
+        }
+        if (length > src.remaining()) {
+            throw new ProtocolException("Truncated string");
+        }
+        if (!src.hasArray()) {
+            byte[] bytes = new byte[length];
+            src.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String value = new String(src.array(), src.arrayOffset() + src.position(), length, StandardCharsets.UTF_8);
+        src.position(src.position() + length);
+        return value;
+    }
+}
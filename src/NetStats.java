@@ -0,0 +1,220 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs réseau d'une connexion (ou de tout le serveur) : messages et octets reçus et envoyés par
+ * type de message, et histogramme des temps d'aller-retour PING/PONG.
+ *
+ * Les compteurs d'une connexion côté serveur alimentent aussi ceux du serveur (parent). L'histogramme
+ * est log-linéaire : quatre cases par puissance de deux de microsecondes, soit une précision de 25 %
+ * sur les percentiles, pour un coût d'enregistrement constant et sans verrou.
+ */
+class NetStats {
+    private static final GameMessage.MessageType[] TYPES = GameMessage.MessageType.values();
+    private static final int SUB_BUCKETS = 4;
+    // Jusqu'à 2^27 µs (plus de deux minutes) ; au-delà tout tombe dans la dernière case
+    private static final int RTT_BUCKETS = 27 * SUB_BUCKETS;
+
+    private final NetStats parent;
+    private final LongAdder[] messagesIn = adders();
+    private final LongAdder[] messagesOut = adders();
+    private final LongAdder[] bytesIn = adders();
+    private final LongAdder[] bytesOut = adders();
+    private final AtomicLongArray rttBuckets = new AtomicLongArray(RTT_BUCKETS);
+    private final LongAdder rttCount = new LongAdder();
+    private volatile long lastRttMicros = -1;
+    // Dernier message reçu, pour repérer les connexions mortes ; pas tenu pour tout le serveur
+    private volatile long lastReceivedNanos = System.nanoTime();
+    // Débits calculés par sampleRates()
+    private long sampledAt;
+    private long sampledBytesIn, sampledBytesOut, sampledMessagesIn, sampledMessagesOut;
+    private volatile double bytesInPerSecond, bytesOutPerSecond, messagesInPerSecond, messagesOutPerSecond;
+
+    NetStats() {
+        this(null);
+    }
+
+    NetStats(NetStats parent) {
+        this.parent = parent;
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[TYPES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // bytes : taille de la trame sur le réseau, préfixe de longueur (et en-tête de datagramme) compris
+    void recordIn(GameMessage.MessageType type, int bytes) {
+        messagesIn[type.ordinal()].increment();
+        bytesIn[type.ordinal()].add(bytes);
+        if (parent != null) {
+            lastReceivedNanos = System.nanoTime();
+            parent.recordIn(type, bytes);
+        }
+    }
+
+    void recordOut(GameMessage.MessageType type, int bytes) {
+        messagesOut[type.ordinal()].increment();
+        bytesOut[type.ordinal()].add(bytes);
+        if (parent != null) {
+            parent.recordOut(type, bytes);
+        }
+    }
+
+    void recordRtt(long micros) {
+        micros = Math.max(0, micros);
+        rttBuckets.incrementAndGet(bucketOf(micros));
+        rttCount.increment();
+        lastRttMicros = micros;
+        if (parent != null) {
+            parent.recordRtt(micros);
+        }
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return Math.min(RTT_BUCKETS - 1, (exponent - 1) * SUB_BUCKETS + sub);
+    }
+
+    // Borne haute de la case : les percentiles sont arrondis vers le haut
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+    }
+
+    // Percentile (0 à 100) des RTT en microsecondes, -1 sans mesure
+    long rttPercentileMicros(double percentile) {
+        long count = rttCount.sum();
+        if (count == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < RTT_BUCKETS; i++) {
+            seen += rttBuckets.get(i);
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(RTT_BUCKETS - 1);
+    }
+
+    long getRttCount() {
+        return rttCount.sum();
+    }
+
+    long getLastRttMicros() {
+        return lastRttMicros;
+    }
+
+    long getLastReceivedNanos() {
+        return lastReceivedNanos;
+    }
+
+    long getMessagesIn(GameMessage.MessageType type) {
+        return messagesIn[type.ordinal()].sum();
+    }
+
+    long getMessagesOut(GameMessage.MessageType type) {
+        return messagesOut[type.ordinal()].sum();
+    }
+
+    long getBytesIn(GameMessage.MessageType type) {
+        return bytesIn[type.ordinal()].sum();
+    }
+
+    long getBytesOut(GameMessage.MessageType type) {
+        return bytesOut[type.ordinal()].sum();
+    }
+
+    long getTotalBytesIn() {
+        return sum(bytesIn);
+    }
+
+    long getTotalBytesOut() {
+        return sum(bytesOut);
+    }
+
+    long getTotalMessagesIn() {
+        return sum(messagesIn);
+    }
+
+    long getTotalMessagesOut() {
+        return sum(messagesOut);
+    }
+
+    private static long sum(LongAdder[] adders) {
+        long total = 0;
+        for (LongAdder adder : adders) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    // Met à jour les débits depuis l'appel précédent ; à appeler périodiquement par un seul thread
+    synchronized void sampleRates(long nowNanos) {
+        long in = getTotalBytesIn();
+        long out = getTotalBytesOut();
+        long messagesReceived = getTotalMessagesIn();
+        long messagesSent = getTotalMessagesOut();
+        if (sampledAt != 0 && nowNanos > sampledAt) {
+            double seconds = (nowNanos - sampledAt) / 1e9;
+            bytesInPerSecond = (in - sampledBytesIn) / seconds;
+            bytesOutPerSecond = (out - sampledBytesOut) / seconds;
+            messagesInPerSecond = (messagesReceived - sampledMessagesIn) / seconds;
+            messagesOutPerSecond = (messagesSent - sampledMessagesOut) / seconds;
+        }
+        sampledAt = nowNanos;
+        sampledBytesIn = in;
+        sampledBytesOut = out;
+        sampledMessagesIn = messagesReceived;
+        sampledMessagesOut = messagesSent;
+    }
+
+    double getBytesInPerSecond() {
+        return bytesInPerSecond;
+    }
+
+    double getBytesOutPerSecond() {
+        return bytesOutPerSecond;
+    }
+
+    double getMessagesInPerSecond() {
+        return messagesInPerSecond;
+    }
+
+    double getMessagesOutPerSecond() {
+        return messagesOutPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("in %,d msg / %,d B, out %,d msg / %,d B",
+                getTotalMessagesIn(), getTotalBytesIn(), getTotalMessagesOut(), getTotalBytesOut()));
+        if (getRttCount() > 0) {
+            sb.append(String.format(", rtt p50 %.1f ms p99 %.1f ms", rttPercentileMicros(50) / 1000.0,
+                    rttPercentileMicros(99) / 1000.0));
+        }
+        for (GameMessage.MessageType type : TYPES) {
+            long received = getMessagesIn(type);
+            long sent = getMessagesOut(type);
+            if (received > 0 || sent > 0) {
+                sb.append(String.format("%n  %-16s in %,10d msg %,12d B | out %,10d msg %,12d B",
+                        type, received, getBytesIn(type), sent, getBytesOut(type)));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,776 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micro-benchmarks de la couche réseau, lancés à la main :
+ *   java NetworkBenchmark codec
+ *   java NetworkBenchmark scale <threads|virtual|nio> <connexions> [émetteurs]
+ *   java NetworkBenchmark snapshot [tick-rate]
+ *   java NetworkBenchmark delta [tick-rate] [keyframe-interval]
+ *   java NetworkBenchmark matches [joueurs-par-partie]
+ *   java NetworkBenchmark roster [threads-max]
+ *   java NetworkBenchmark interest [rayon] [largeur] [hauteur]
+ *   java NetworkBenchmark world [joueurs]
+ *   java NetworkBenchmark broadcast [clients-max]
+ */
+public class NetworkBenchmark {
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "codec";
+        switch (mode) {
+            case "codec":
+                benchmarkCodec();
+                break;
+            case "scale":
+                benchmarkScale(args[1], Integer.parseInt(args[2]), args.length > 3 ? Integer.parseInt(args[3]) : 8);
+                break;
+            case "snapshot":
+                benchmarkSnapshot(args.length > 1 ? Integer.parseInt(args[1]) : 20);
+                break;
+            case "delta":
+                benchmarkDelta(args.length > 1 ? Integer.parseInt(args[1]) : 20,
+                        args.length > 2 ? Integer.parseInt(args[2]) : 20);
+                break;
+            case "matches":
+                benchmarkMatches(args.length > 1 ? Integer.parseInt(args[1]) : 4);
+                break;
+            case "interest":
+                benchmarkInterest(args.length > 1 ? Integer.parseInt(args[1]) : 400,
+                        args.length > 2 ? Integer.parseInt(args[2]) : 3200,
+                        args.length > 3 ? Integer.parseInt(args[3]) : 2400);
+                break;
+            case "world":
+                benchmarkWorld(args.length > 1 ? Integer.parseInt(args[1]) : 32);
+                break;
+            case "roster":
+                benchmarkRoster(args.length > 1 ? Integer.parseInt(args[1]) : 16);
+                break;
+            case "broadcast":
+                benchmarkBroadcast(args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+                break;
+            default:
+                System.err.println("Unknown benchmark: " + mode);
+        }
+    }
+
+    // Compare la sérialisation Java (flux long, jamais reset) au codec binaire
+    private static void benchmarkCodec() throws Exception {
+        String playerName = "Joueur";
+        GameMessage[] samples = {
+                GameMessage.createPositionMessage(playerName, 412, 450, 3, 1250, 7),
+                GameMessage.createShootMessage(playerName, 437, 450, 7),
+                GameMessage.createChatMessage(playerName, "gg", 7)
+        };
+
+        for (GameMessage sample : samples) {
+            runSerialization(sample, WARMUP);
+            runCodec(sample, WARMUP);
+
+            long[] serialization = runSerialization(sample, ITERATIONS);
+            long[] codec = runCodec(sample, ITERATIONS);
+            System.out.printf("%-16s serialization: %5.1f B/msg %7.1f ns/msg | codec: %5.1f B/msg %7.1f ns/msg%n",
+                    sample.getType(),
+                    (double) serialization[0] / ITERATIONS, (double) serialization[1] / ITERATIONS,
+                    (double) codec[0] / ITERATIONS, (double) codec[1] / ITERATIONS);
+        }
+    }
+
+    // Retourne {octets écrits, nanosecondes} pour encodage + décodage de n messages
+    private static long[] runSerialization(GameMessage sample, int n) throws Exception {
+        PipedBuffer pipe = new PipedBuffer();
+        ObjectOutputStream out = new ObjectOutputStream(pipe);
+        out.flush();
+        ObjectInputStream in = new ObjectInputStream(pipe.input());
+        long bytesBefore = pipe.written;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            out.writeObject(copyOf(sample, i));
+            out.flush();
+            in.readObject();
+            pipe.compact();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new long[]{pipe.written - bytesBefore, elapsed};
+    }
+
+    private static long[] runCodec(GameMessage sample, int n) throws Exception {
+        PipedBuffer pipe = new PipedBuffer();
+        DataOutputStream out = new DataOutputStream(pipe);
+        DataInputStream in = new DataInputStream(pipe.input());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            MessageCodec.write(out, copyOf(sample, i));
+            out.flush();
+            MessageCodec.read(in);
+            pipe.compact();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new long[]{pipe.written, elapsed};
+    }
+
+    /*
+     * Démarre le serveur dans ce processus puis ouvre N connexions inactives (connectées mais sans
+     * PLAYER_JOIN, donc sans diffusion de la liste des joueurs) et quelques émetteurs qui
+     * envoient des positions en continu. Mesure la mémoire et les threads par connexion, puis le
+     * débit de messages entrants et diffusés.
+     */
+    private static void benchmarkScale(String engine, int connections, int senders) throws Exception {
+        int port = 5556;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        PrintStream report = new PrintStream(new FileOutputStream(FileDescriptor.out), true);
+
+        // Les émetteurs inondent le serveur exprès et les connexions inactives se taisent : ni limite de
+        // débit ni délai d'inactivité, sinon les unes comme les autres seraient déconnectées
+        Thread serverThread = new Thread(() -> Server.main(new String[]{"--engine=" + engine, "--port=" + port, "--udp-port=0",
+                "--rate-total=0", "--rate-player-position=0", "--rate-kick=0", "--idle-timeout-ms=0"}));
+        serverThread.setDaemon(true);
+        serverThread.start();
+        InetSocketAddress address = new InetSocketAddress("localhost", port);
+        waitForServer(address);
+
+        long rssBefore = readRssKb();
+        long heapBefore = usedHeap();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        FrameDrain drain = new FrameDrain();
+        List<SocketChannel> senderChannels = new ArrayList<>();
+        for (int i = 0; i < senders; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            writeFully(channel, GameMessage.createJoinMessage("bench-" + i, 0, 0));
+            channel.configureBlocking(false);
+            drain.register(channel);
+            senderChannels.add(channel);
+        }
+        // Les connexions inactives sont ouvertes en parallèle : un connect local n'est pas instantané
+        ExecutorService connector = Executors.newFixedThreadPool(64);
+        for (int i = senders; i < connections; i++) {
+            connector.execute(() -> {
+                try {
+                    SocketChannel channel = SocketChannel.open(address);
+                    channel.configureBlocking(false);
+                    drain.register(channel);
+                } catch (IOException e) {
+                    System.err.println("Connection failed: " + e.getMessage());
+                }
+            });
+        }
+        connector.shutdown();
+        connector.awaitTermination(10, TimeUnit.MINUTES);
+        Thread.sleep(2000);
+
+        long rss = readRssKb() - rssBefore;
+        long heap = usedHeap() - heapBefore;
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+
+        // Débit : les émetteurs envoient des positions aussi vite que possible
+        int seconds = 5;
+        long framesBefore = drain.frames.get();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long sent = 0;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < senderChannels.size(); i++) {
+                writeFully(senderChannels.get(i),
+                        GameMessage.createPositionMessage("bench-" + i, (int) (sent & 511), 450, 3, 0, 0));
+                sent++;
+            }
+        }
+        long delivered = drain.frames.get() - framesBefore;
+        OutboundQueue.Stats queues = Server.getOutboundStats();
+
+        report.printf("engine=%s connections=%d rss=%.1f MB (%.1f KB/conn) heap=%.1f MB threads=+%d%n",
+                engine, connections, rss / 1024.0, (double) rss / connections, heap / (1024.0 * 1024.0), threads);
+        report.printf("  inbound=%,d msg/s delivered=%,d msg/s%n", sent / seconds, delivered / seconds);
+        report.println("  queues: " + queues);
+        System.exit(0);
+    }
+
+    private static void waitForServer(InetSocketAddress address) throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            try {
+                SocketChannel.open(address).close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Server did not start on " + address);
+    }
+
+    private static void writeFully(SocketChannel channel, GameMessage message) throws IOException {
+        ByteBuffer frame = ByteBuffer.wrap(MessageCodec.encode(message));
+        while (frame.hasRemaining()) {
+            if (channel.write(frame) == 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    // VmRSS du processus (Linux), pour compter aussi les piles natives des threads
+    private static long readRssKb() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read RSS: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    // Lit et compte les trames reçues sur toutes les connexions de test, depuis un seul thread
+    private static class FrameDrain implements Runnable {
+        private final Selector selector;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        private final AtomicLong frames = new AtomicLong();
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        FrameDrain() throws IOException {
+            selector = Selector.open();
+            Thread thread = new Thread(this, "bench-drain");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void register(SocketChannel channel) {
+            pending.add(channel);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    selector.select(10);
+                    SocketChannel channel;
+                    while ((channel = pending.poll()) != null) {
+                        channel.register(selector, SelectionKey.OP_READ, new int[]{0, -1});
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        count((SocketChannel) key.channel(), (int[]) key.attachment());
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } catch (IOException e) {
+                System.err.println("Drain error: " + e.getMessage());
+            }
+        }
+
+        // state[0] = octets restants de la trame courante, state[1] = premier octet d'un préfixe coupé
+        private void count(SocketChannel channel, int[] state) throws IOException {
+            buffer.clear();
+            if (channel.read(buffer) < 0) {
+                channel.close();
+                return;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (state[0] > 0) {
+                    int n = Math.min(state[0], buffer.remaining());
+                    buffer.position(buffer.position() + n);
+                    state[0] -= n;
+                } else if (state[1] >= 0) {
+                    state[0] = (state[1] << 8) | (buffer.get() & 0xFF);
+                    state[1] = -1;
+                    frames.incrementAndGet();
+                } else if (buffer.remaining() >= MessageCodec.LENGTH_PREFIX) {
+                    state[0] = buffer.getShort() & 0xFFFF;
+                    frames.incrementAndGet();
+                } else {
+                    state[1] = buffer.get() & 0xFF;
+                }
+            }
+        }
+    }
+
+    /*
+     * Trafic sortant du serveur avec des clients qui envoient leur position à 60 Hz :
+     * avant, chaque PLAYER_POSITION est rediffusé aux n-1 autres joueurs ; après, chaque client
+     * reçoit un seul GAME_STATE par tick. Les tailles sont celles des trames réellement encodées.
+     */
+    private static void benchmarkSnapshot(int tickRate) {
+        int clientRate = 60;
+        System.out.printf("%7s | %14s %12s | %14s %12s | %s%n",
+                "players", "rebroadcast", "msg/s", "GAME_STATE@" + tickRate, "msg/s", "ratio");
+        for (int n : new int[]{2, 4, 8, 16, 32, 64, 128}) {
+            List<GameMessage.PlayerState> states = new ArrayList<>();
+            long positionBytes = 0;
+            for (int i = 0; i < n; i++) {
+                String name = "Joueur" + i;
+                states.add(new GameMessage.PlayerState(name, 100 + i * 5, 450, 3, 120 * i));
+                positionBytes += MessageCodec.encode(
+                        GameMessage.createPositionMessage(name, 100 + i * 5, 450, 3, 120 * i, 0)).length;
+            }
+            int snapshotBytes = MessageCodec.encode(GameMessage.createGameStateMessage(1000, 50_000L, states, 0)).length;
+
+            long beforeBytes = positionBytes * (n - 1) * clientRate;
+            long beforeMessages = (long) n * (n - 1) * clientRate;
+            long afterBytes = (long) snapshotBytes * n * tickRate;
+            long afterMessages = (long) n * tickRate;
+            System.out.printf("%7d | %11.1f KB/s %,12d | %11.1f KB/s %,12d | %.2fx%n",
+                    n, beforeBytes / 1024.0, beforeMessages, afterBytes / 1024.0, afterMessages,
+                    (double) beforeBytes / afterBytes);
+        }
+    }
+
+    /*
+     * Octets reçus par un client avec les GAME_STATE complets puis en delta, sur une minute simulée,
+     * selon la part de joueurs en mouvement (les autres sont immobiles).
+     */
+    private static void benchmarkDelta(int tickRate, int keyframeInterval) {
+        int ticks = tickRate * 60;
+        System.out.printf("%7s %7s | %12s | %12s | %s%n", "players", "moving", "full", "delta", "ratio");
+        for (int n : new int[]{2, 8, 32, 128}) {
+            for (int percent : new int[]{0, 25, 100}) {
+                int moving = n * percent / 100;
+                DeltaBaseline baseline = new DeltaBaseline();
+                long fullBytes = 0;
+                long deltaBytes = 0;
+                for (int tick = 1; tick <= ticks; tick++) {
+                    List<GameMessage.PlayerState> states = new ArrayList<>(n);
+                    for (int i = 0; i < n; i++) {
+                        int x = i < moving ? 100 + (tick * 3 + i) % 600 : 100 + i * 5;
+                        states.add(new GameMessage.PlayerState("Joueur" + i, x, 450, 3, 120 * i));
+                    }
+                    fullBytes += MessageCodec.encode(GameMessage.createGameStateMessage(tick, tick * 50L, states, 0)).length;
+                    List<GameMessage.PlayerState> entries = baseline.diff(tick, states, keyframeInterval);
+                    deltaBytes += MessageCodec.encode(GameMessage.createGameStateMessage(tick, tick * 50L, entries, 0)).length;
+                }
+                System.out.printf("%7d %6d%% | %7.2f KB/s | %7.2f KB/s | %.1fx%n",
+                        n, percent, fullBytes / 60 / 1024.0, deltaBytes / 60 / 1024.0,
+                        (double) fullBytes / Math.max(1, deltaBytes));
+            }
+        }
+    }
+
+    /*
+     * Parties simultanées dans un même processus, avec des connexions en mémoire : vérifie qu'un chat
+     * n'atteint que sa partie et mesure le coût d'un tick serveur selon le nombre de parties.
+     */
+    private static void benchmarkMatches(int playersPerMatch) {
+        System.out.printf("%8s %8s | %12s | %s%n", "matches", "players", "tick", "leaked");
+        for (int matchCount : new int[]{10, 100, 500, 1000}) {
+            List<RecordingConnection> connections = new ArrayList<>();
+            for (int m = 1; m <= matchCount; m++) {
+                for (int p = 0; p < playersPerMatch; p++) {
+                    RecordingConnection connection = new RecordingConnection("p" + p, m);
+                    Server.addClient(connection);
+                    Server.handleJoin(connection, GameMessage.createJoinMessage(connection.name, 0, m));
+                    connections.add(connection);
+                }
+            }
+            for (int i = 0; i < connections.size(); i += playersPerMatch) {
+                RecordingConnection sender = connections.get(i);
+                Server.handleMessage(sender, GameMessage.createChatMessage(sender.name, "gg", sender.matchId));
+            }
+
+            int ticks = 200;
+            for (int i = 0; i < ticks; i++) {
+                Server.tick();
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ticks; i++) {
+                Server.tick();
+            }
+            double tickMicros = (System.nanoTime() - start) / 1000.0 / ticks;
+
+            long leaked = connections.stream().mapToLong(c -> c.foreignMessages).sum();
+            System.out.printf("%8d %8d | %9.1f us | %d%n", Server.getMatchCount(), connections.size(), tickMicros, leaked);
+            for (RecordingConnection connection : connections) {
+                Server.removeClient(connection, connection.name);
+            }
+            if (Server.getMatchCount() != 0) {
+                System.err.println("Matches still open after all players left: " + Server.getMatchCount());
+            }
+        }
+    }
+
+    /*
+     * Coût CPU d'une diffusion selon le nombre de destinataires : chaque destinataire écrit la trame dans
+     * son tampon d'envoi, comme le réacteur NIO. Compare l'encodage par destinataire à l'encodage unique
+     * (MessageCodec.share) recopié par chacun. Un nouveau message par diffusion, comme dans Match.
+     */
+    private static void benchmarkBroadcast(int maxClients) {
+        List<GameMessage.EntityState> entities = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            entities.add(new GameMessage.EntityState(1000 + i, i % 3, i % 2 == 0 ? "p" + i : null, 20 * i, -40, 120, 5000 + i, 3));
+        }
+        List<Integer> removed = List.of(900, 901, 902);
+        ByteBuffer sendBuffer = ByteBuffer.allocateDirect(MessageCodec.LENGTH_PREFIX + MessageCodec.MAX_FRAME_SIZE);
+        java.lang.management.ThreadMXBean cpu = ManagementFactory.getThreadMXBean();
+
+        System.out.printf("%8s | %22s | %22s | %s%n", "clients", "encode per client", "encode once", "speedup");
+        for (int clients = 10; clients <= maxClients; clients *= 10) {
+            int broadcasts = Math.max(200, 2_000_000 / clients);
+            double[] micros = new double[2];
+            for (int shared = 0; shared < 2; shared++) {
+                for (int pass = 0; pass < 2; pass++) {
+                    // Première passe : préchauffage
+                    long start = cpu.getCurrentThreadCpuTime();
+                    for (int b = 0; b < broadcasts; b++) {
+                        GameMessage message = GameMessage.createEnemyUpdateMessage(b, 5000 + b, entities, removed, 1);
+                        if (shared == 1) {
+                            MessageCodec.share(message);
+                        }
+                        for (int c = 0; c < clients; c++) {
+                            sendBuffer.clear();
+                            MessageCodec.encode(message, sendBuffer);
+                        }
+                    }
+                    micros[shared] = (cpu.getCurrentThreadCpuTime() - start) / 1000.0 / broadcasts;
+                }
+            }
+            System.out.printf("%8d | %9.1f us %6.0f ns/c | %9.1f us %6.0f ns/c | %.1fx%n", clients,
+                    micros[0], micros[0] * 1000 / clients, micros[1], micros[1] * 1000 / clients, micros[0] / micros[1]);
+        }
+    }
+
+    /*
+     * Contention sur le roster : N threads mettent à jour chacun la position de son joueur pendant qu'un
+     * lecteur relit tous les états en boucle (comme le tick). Compare le roster CAS de Match à l'ancien
+     * schéma, un verrou unique autour d'une table d'états mutables copiée par les lecteurs.
+     */
+    private static void benchmarkRoster(int maxThreads) throws InterruptedException {
+        System.out.printf("%7s | %16s | %16s%n", "threads", "lock-free upd/s", "locked upd/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            String[] names = new String[threads];
+            Match match = new Match(1, new ServerConfig());
+            for (int i = 0; i < threads; i++) {
+                names[i] = "p" + i;
+                match.join(new RecordingConnection(names[i], 1), GameMessage.createJoinMessage(names[i], 0, 1));
+            }
+            long lockFree = runUpdaters(threads, i -> match.updatePlayerPosition(names[i],
+                    GameMessage.FIELD_X, (int) (System.nanoTime() & 511), 0, 0, 0), () -> {
+                List<GameMessage.PlayerState> snapshot = new ArrayList<>();
+                for (Match.Player player : match.getRoster()) {
+                    snapshot.add(player.state.get());
+                }
+            });
+
+            java.util.concurrent.locks.ReentrantLock lock = new java.util.concurrent.locks.ReentrantLock();
+            java.util.Map<String, int[]> states = new java.util.HashMap<>();
+            for (int i = 0; i < threads; i++) {
+                states.put(names[i], new int[4]);
+            }
+            long locked = runUpdaters(threads, i -> {
+                lock.lock();
+                try {
+                    states.get(names[i])[0] = (int) (System.nanoTime() & 511);
+                } finally {
+                    lock.unlock();
+                }
+            }, () -> {
+                lock.lock();
+                try {
+                    new java.util.HashMap<>(states);
+                } finally {
+                    lock.unlock();
+                }
+            });
+            System.out.printf("%7d | %,16d | %,16d%n", threads, lockFree, locked);
+        }
+    }
+
+    // Lance les écrivains et un lecteur pendant une seconde ; retourne les mises à jour par seconde
+    private static long runUpdaters(int threads, java.util.function.IntConsumer update, Runnable read)
+            throws InterruptedException {
+        AtomicLong updates = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            workers.add(new Thread(() -> {
+                long n = 0;
+                while (System.nanoTime() < deadline) {
+                    update.accept(index);
+                    n++;
+                }
+                updates.addAndGet(n);
+            }));
+        }
+        workers.add(new Thread(() -> {
+            while (System.nanoTime() < deadline) {
+                read.run();
+            }
+        }));
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return updates.get();
+    }
+
+    /*
+     * Trafic sortant par tick d'une partie dont les joueurs se déplacent au hasard dans une grande arène
+     * et tirent de temps en temps, sans puis avec filtrage par zone d'intérêt.
+     */
+    private static void benchmarkInterest(int radius, int width, int height) {
+        System.out.printf("arena %dx%d, interest radius %d, distant players every 4 ticks%n", width, height, radius);
+        System.out.printf("%7s %5s | %10s %10s %12s%n", "players", "AoI", "msg/tick", "upd/tick", "bytes/tick");
+        for (int n : new int[]{50, 200}) {
+            for (boolean filtered : new boolean[]{false, true}) {
+                ServerConfig config = new ServerConfig();
+                config.interestRadius = filtered ? radius : 0;
+                Match match = new Match(1, config);
+                java.util.Random random = new java.util.Random(42);
+                RecordingConnection[] connections = new RecordingConnection[n];
+                int[][] positions = new int[n][2];
+                for (int i = 0; i < n; i++) {
+                    connections[i] = new RecordingConnection("p" + i, 1);
+                    match.join(connections[i], GameMessage.createJoinMessage(connections[i].name, 0, 1));
+                    positions[i][0] = random.nextInt(width);
+                    positions[i][1] = random.nextInt(height);
+                }
+
+                int warmup = 40;
+                int ticks = 400;
+                for (int tick = 0; tick < warmup + ticks; tick++) {
+                    if (tick == warmup) {
+                        for (RecordingConnection connection : connections) {
+                            connection.resetCounters();
+                        }
+                    }
+                    for (int i = 0; i < n; i++) {
+                        positions[i][0] = Math.floorMod(positions[i][0] + random.nextInt(11) - 5, width);
+                        positions[i][1] = Math.floorMod(positions[i][1] + random.nextInt(11) - 5, height);
+                        match.updatePlayerPosition(connections[i].name, GameMessage.FIELD_X | GameMessage.FIELD_Y,
+                                positions[i][0], positions[i][1], 0, 0);
+                        if (random.nextInt(20) == 0) {
+                            match.handleMessage(connections[i], GameMessage.createShootMessage(
+                                    connections[i].name, positions[i][0], positions[i][1], 1));
+                        }
+                    }
+                    match.tick(tick * 50L);
+                }
+
+                long messages = 0;
+                long updates = 0;
+                long bytes = 0;
+                for (RecordingConnection connection : connections) {
+                    messages += connection.messages;
+                    updates += connection.stateEntries;
+                    bytes += connection.bytes;
+                }
+                System.out.printf("%7d %5s | %,10d %,10d %,12d%n", n, filtered ? "on" : "off",
+                        messages / ticks, updates / ticks, bytes / ticks);
+            }
+        }
+    }
+
+    /*
+     * Durée du tick d'une partie dont le serveur simule ennemis et projectiles, en multipliant les
+     * apparitions d'ennemis ; chaque joueur tire un tick sur deux. Le budget d'un tick à 20 Hz est de 50 ms.
+     */
+    private static void benchmarkWorld(int playerCount) {
+        System.out.printf("%d players, one shot every 2 ticks each, 20 Hz%n", playerCount);
+        System.out.printf("%9s | %7s %11s | %9s %9s %9s | %s%n",
+                "spawn-ms", "enemies", "projectiles", "avg", "p99", "max", "KB/s per client");
+        for (int spawnMs : new int[]{500, 50, 10, 4}) {
+            Match match = new Match(1, new ServerConfig(), new MatchWorld(spawnMs, 1, new java.util.Random(42)));
+            java.util.Random random = new java.util.Random(42);
+            RecordingConnection[] connections = new RecordingConnection[playerCount];
+            for (int i = 0; i < playerCount; i++) {
+                connections[i] = new RecordingConnection("p" + i, 1);
+                match.join(connections[i], GameMessage.createJoinMessage(connections[i].name, 0, 1));
+            }
+
+            int warmup = 400;
+            int ticks = 2000;
+            long[] durations = new long[ticks];
+            long enemies = 0;
+            long projectiles = 0;
+            MatchWorld world = match.getWorld();
+            for (int tick = 0; tick < warmup + ticks; tick++) {
+                if (tick == warmup) {
+                    for (RecordingConnection connection : connections) {
+                        connection.resetCounters();
+                    }
+                }
+                for (int i = 0; i < playerCount; i++) {
+                    // Joueurs immortels, pour que tous restent des cibles
+                    int x = random.nextInt(750);
+                    match.updatePlayerPosition(connections[i].name, GameMessage.FIELD_X | GameMessage.FIELD_Y
+                            | GameMessage.FIELD_HEALTH, x, 450 + random.nextInt(100), 3, 0);
+                    if ((tick + i) % 2 == 0) {
+                        match.handleMessage(connections[i], GameMessage.createShootMessage(
+                                connections[i].name, x + 25, 450, 1));
+                    }
+                }
+                long start = System.nanoTime();
+                match.tick(tick * 50L);
+                long elapsed = System.nanoTime() - start;
+                if (tick >= warmup) {
+                    durations[tick - warmup] = elapsed;
+                    enemies += world.getEnemyCount();
+                    projectiles += world.getProjectileCount();
+                }
+            }
+
+            long bytes = 0;
+            for (RecordingConnection connection : connections) {
+                bytes += connection.bytes;
+            }
+            java.util.Arrays.sort(durations);
+            long total = 0;
+            for (long duration : durations) {
+                total += duration;
+            }
+            System.out.printf("%9d | %7d %11d | %6d us %6d us %6d us | %.1f%n", spawnMs,
+                    enemies / ticks, projectiles / ticks, total / ticks / 1000,
+                    durations[ticks * 99 / 100] / 1000, durations[ticks - 1] / 1000,
+                    bytes / 1024.0 / playerCount / (ticks / 20.0));
+        }
+    }
+
+    // Connexion en mémoire qui compte les messages venus d'une autre partie que la sienne
+    private static class RecordingConnection implements ClientConnection {
+        final String name;
+        final int matchId;
+        final OutboundQueue queue = new OutboundQueue(1, 1);
+        final NetStats stats = new NetStats();
+        final RateLimiter rateLimiter = new RateLimiter(new ServerConfig());
+        long foreignMessages;
+        long messages;
+        long stateEntries;
+        long bytes;
+
+        RecordingConnection(String name, int matchId) {
+            this.name = name;
+            this.matchId = matchId;
+        }
+
+        @Override
+        public String getPlayerName() {
+            return name;
+        }
+
+        @Override
+        public void sendMessage(GameMessage message) {
+            // JOIN_ACCEPTED et PING concernent la connexion, pas une partie
+            if (message.getType() != GameMessage.MessageType.JOIN_ACCEPTED
+                    && message.getType() != GameMessage.MessageType.PING && message.getMatchId() != matchId) {
+                foreignMessages++;
+            }
+            messages++;
+            if (message.getType() == GameMessage.MessageType.GAME_STATE) {
+                stateEntries += message.getPlayerStates().size();
+            }
+            bytes += MessageCodec.encode(message).length;
+        }
+
+        void resetCounters() {
+            messages = 0;
+            stateEntries = 0;
+            bytes = 0;
+        }
+
+        @Override
+        public OutboundQueue getOutboundQueue() {
+            return queue;
+        }
+
+        @Override
+        public NetStats getStats() {
+            return stats;
+        }
+
+        @Override
+        public RateLimiter getRateLimiter() {
+            return rateLimiter;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Un nouvel objet par envoi, comme ClientManager.sendPosition
+    private static GameMessage copyOf(GameMessage m, int i) {
+        switch (m.getType()) {
+            case PLAYER_POSITION:
+                return GameMessage.createPositionMessage(m.getPlayerName(), m.getX() + (i & 7), m.getY(),
+                        m.getHealth(), m.getScore(), m.getMatchId());
+            case PLAYER_SHOOT:
+                return GameMessage.createShootMessage(m.getPlayerName(), m.getProjectileX(), m.getProjectileY(), m.getMatchId());
+            default:
+                return GameMessage.createChatMessage(m.getPlayerName(), m.getChatContent(), m.getMatchId());
+        }
+    }
+
+    // Tampon mémoire partagé entre un flux d'écriture et un flux de lecture
+    private static class PipedBuffer extends OutputStream {
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private long written;
+        private int readPos;
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.put(b, off, len);
+            written += len;
+        }
+
+        void compact() {
+            if (readPos == buffer.position()) {
+                buffer.clear();
+                readPos = 0;
+            }
+        }
+
+        InputStream input() {
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return readPos < buffer.position() ? buffer.get(readPos++) & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    int available = buffer.position() - readPos;
+                    if (available <= 0) {
+                        return -1;
+                    }
+                    int n = Math.min(len, available);
+                    buffer.get(readPos, b, off, n);
+                    readPos += n;
+                    return n;
+                }
+
+                @Override
+                public int available() {
+                    return buffer.position() - readPos;
+                }
+            };
+        }
+    }
+}
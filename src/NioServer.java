@@ -0,0 +1,350 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moteur serveur non bloquant : un thread accepte les connexions et les répartit
+ * entre N réacteurs, chacun avec son propre Selector.
+ */
+public class NioServer {
+    // Trames traitées par connexion et par tour de boucle, pour que les écritures ne soient pas affamées
+    private static final int MAX_FRAMES_PER_TURN = 32;
+
+    private final ServerConfig config;
+    private final Reactor[] reactors;
+
+    public NioServer(ServerConfig config) throws IOException {
+        this.config = config;
+        this.reactors = new Reactor[config.reactorThreads];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new Reactor(i);
+        }
+    }
+
+    public void run() throws IOException {
+        for (Reactor reactor : reactors) {
+            Thread thread = new Thread(reactor, "nio-reactor-" + reactor.index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(config.port));
+            Server.onListening();
+            System.out.println("Game Server (NIO, " + reactors.length + " reactors) started on port " + config.port);
+            System.out.println("Waiting for players...");
+
+            int next = 0;
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                System.out.println("New client connected: " + channel.socket().getInetAddress().getHostAddress());
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+
+                Reactor reactor = reactors[next];
+                next = (next + 1) % reactors.length;
+                NioConnection connection = new NioConnection(channel, reactor, config);
+                Server.addClient(connection);
+                reactor.execute(() -> connection.register());
+            }
+        }
+    }
+
+    static class Reactor implements Runnable {
+        private final int index;
+        private final Selector selector;
+        // Tampon d'encodage partagé par les connexions du réacteur : plusieurs trames par écriture
+        private final ByteBuffer writeScratch = ByteBuffer.allocateDirect(4 * (MessageCodec.LENGTH_PREFIX + MessageCodec.MAX_FRAME_SIZE));
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // Connexions ayant encore des trames complètes en tampon
+        private final ArrayDeque<NioConnection> backlog = new ArrayDeque<>();
+        private volatile Thread thread;
+
+        Reactor(int index) throws IOException {
+            this.index = index;
+            this.selector = Selector.open();
+        }
+
+        // Exécute une tâche sur le thread du réacteur
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread) {
+                selector.wakeup();
+            }
+        }
+
+        boolean inReactorThread() {
+            return Thread.currentThread() == thread;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            while (true) {
+                try {
+                    if (backlog.isEmpty()) {
+                        selector.select();
+                    } else {
+                        selector.selectNow();
+                    }
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        NioConnection connection = (NioConnection) key.attachment();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    }
+
+                    for (int i = backlog.size(); i > 0; i--) {
+                        backlog.poll().processFrames();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Reactor " + index + " error: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    System.err.println("Reactor " + index + " unexpected error: " + e);
+                }
+            }
+        }
+    }
+
+    static class NioConnection implements ClientConnection {
+        private final SocketChannel channel;
+        private final Reactor reactor;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(MessageCodec.LENGTH_PREFIX + MessageCodec.MAX_FRAME_SIZE);
+        private final OutboundQueue outbound;
+        private final NetStats stats = new NetStats(Server.getStats());
+        private final RateLimiter rateLimiter;
+        private final AtomicBoolean writeScheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private SelectionKey key;
+        // Reste d'une écriture partielle
+        private ByteBuffer pending;
+        private volatile String playerName;
+        private boolean joined;
+        private boolean closeAfterFlush;
+        private boolean inBacklog;
+
+        NioConnection(SocketChannel channel, Reactor reactor, ServerConfig config) {
+            this.channel = channel;
+            this.reactor = reactor;
+            this.outbound = new OutboundQueue(config.queueCapacity, config.queueDegradeThreshold);
+            this.rateLimiter = new RateLimiter(config);
+        }
+
+        void register() {
+            try {
+                key = channel.register(reactor.selector, SelectionKey.OP_READ, this);
+                if (!outbound.isEmpty()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (ClosedChannelException e) {
+                close();
+            }
+        }
+
+        void onReadable() {
+            if (!readBuffer.hasRemaining()) {
+                // Tampon plein de trames pas encore traitées : le backlog s'en charge
+                return;
+            }
+            int n;
+            try {
+                n = channel.read(readBuffer);
+            } catch (IOException e) {
+                System.err.println("IO error for client " + playerName + ": " + e.getMessage());
+                close();
+                return;
+            }
+            if (n < 0) {
+                System.err.println("Connection closed by client " + playerName);
+                close();
+                return;
+            }
+            if (!inBacklog) {
+                processFrames();
+            }
+        }
+
+        // Traite au plus MAX_FRAMES_PER_TURN trames ; le reste attend le prochain tour du réacteur
+        void processFrames() {
+            inBacklog = false;
+            readBuffer.flip();
+            int frames = 0;
+            try {
+                while (!closed.get() && !closeAfterFlush && readBuffer.remaining() >= MessageCodec.LENGTH_PREFIX) {
+                    int length = readBuffer.getShort(readBuffer.position()) & 0xFFFF;
+                    if (length == 0) {
+                        throw new ProtocolException("Empty frame");
+                    }
+                    if (readBuffer.remaining() < MessageCodec.LENGTH_PREFIX + length) {
+                        break;
+                    }
+                    if (frames++ == MAX_FRAMES_PER_TURN) {
+                        inBacklog = true;
+                        reactor.backlog.add(this);
+                        break;
+                    }
+                    int bodyStart = readBuffer.position() + MessageCodec.LENGTH_PREFIX;
+                    ByteBuffer body = readBuffer.slice(bodyStart, length);
+                    readBuffer.position(bodyStart + length);
+                    GameMessage message = MessageCodec.decode(body);
+                    stats.recordIn(message.getType(), MessageCodec.LENGTH_PREFIX + length);
+                    onMessage(message);
+                }
+            } catch (ProtocolException e) {
+                System.err.println("Invalid message format from " + playerName + ": " + e.getMessage());
+                close();
+                return;
+            }
+            readBuffer.compact();
+        }
+
+        // Même sémantique que ClientHandler.run
+        private void onMessage(GameMessage message) {
+            if (joined) {
+                Server.handleMessage(this, message);
+                return;
+            }
+            playerName = message.getPlayerName();
+            if (Server.handleJoin(this, message)) {
+                joined = true;
+            } else {
+                playerName = null;
+                closeAfterFlush = true;
+                if (outbound.isEmpty() && pending == null) {
+                    close();
+                }
+            }
+        }
+
+        void onWritable() {
+            try {
+                if (pending != null) {
+                    channel.write(pending);
+                    if (pending.hasRemaining()) {
+                        return;
+                    }
+                    pending = null;
+                }
+
+                ByteBuffer scratch = reactor.writeScratch;
+                while (true) {
+                    scratch.clear();
+                    GameMessage message;
+                    while (scratch.remaining() >= MessageCodec.LENGTH_PREFIX + MessageCodec.MAX_FRAME_SIZE
+                            && (message = outbound.poll()) != null) {
+                        int start = scratch.position();
+                        MessageCodec.encode(message, scratch);
+                        stats.recordOut(message.getType(), scratch.position() - start);
+                    }
+                    if (scratch.position() == 0) {
+                        break;
+                    }
+                    scratch.flip();
+                    channel.write(scratch);
+                    if (scratch.hasRemaining()) {
+                        pending = ByteBuffer.allocate(scratch.remaining());
+                        pending.put(scratch).flip();
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error sending message to " + playerName + ": " + e.getMessage());
+                close();
+                return;
+            }
+
+            writeScheduled.set(false);
+            if (!outbound.isEmpty() && writeScheduled.compareAndSet(false, true)) {
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if (closeAfterFlush) {
+                close();
+            }
+        }
+
+        @Override
+        public void sendMessage(GameMessage message) {
+            if (closed.get()) {
+                return;
+            }
+            if (!outbound.offer(message)) {
+                System.err.println("Outbound queue full for " + playerName + ", disconnecting slow client");
+                OutboundQueue.slowConsumerDisconnects.increment();
+                close();
+                return;
+            }
+            if (writeScheduled.compareAndSet(false, true)) {
+                if (reactor.inReactorThread()) {
+                    enableWrite();
+                } else {
+                    reactor.execute(this::enableWrite);
+                }
+            }
+        }
+
+        @Override
+        public OutboundQueue getOutboundQueue() {
+            return outbound;
+        }
+
+        @Override
+        public NetStats getStats() {
+            return stats;
+        }
+
+        @Override
+        public RateLimiter getRateLimiter() {
+            return rateLimiter;
+        }
+
+        private void enableWrite() {
+            if (key != null && key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        @Override
+        public String getPlayerName() {
+            return playerName;
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            outbound.close();
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing socket for " + playerName + ": " + e.getMessage());
+            }
+            Server.removeClient(this, playerName);
+        }
+    }
+}
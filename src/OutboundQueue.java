@@ -0,0 +1,193 @@
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * File d'envoi bornée d'une connexion, vidée par un seul écrivain.
+ *
+ * Les PLAYER_POSITION d'un même joueur sont fusionnés, de même que les instantanés GAME_STATE :
+ * les deltas en attente sont combinés champ par champ pour qu'aucune modification ne soit perdue.
+ * Les ENEMY_UPDATE en attente sont réunis en un seul lot.
+ * Au-delà du seuil de dégradation les tirs sont abandonnés, et au-delà de la capacité le client est
+ * considéré comme trop lent ({@link #offer} retourne false).
+ */
+class OutboundQueue {
+    // Compteurs globaux, tous clients confondus
+    static final LongAdder totalCoalesced = new LongAdder();
+    static final LongAdder totalDropped = new LongAdder();
+    static final LongAdder slowConsumerDisconnects = new LongAdder();
+    // Plus grande profondeur atteinte par une file depuis le démarrage
+    static final LongAccumulator peakDepth = new LongAccumulator(Math::max, 0);
+
+    private final int capacity;
+    private final int degradeThreshold;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final Map<Object, Entry> coalescable = new HashMap<>();
+    private boolean closed;
+
+    private static class Entry {
+        GameMessage message;
+        final Object coalesceKey;
+
+        Entry(GameMessage message, Object coalesceKey) {
+            this.message = message;
+            this.coalesceKey = coalesceKey;
+        }
+    }
+
+    OutboundQueue(int capacity, int degradeThreshold) {
+        this.capacity = capacity;
+        this.degradeThreshold = degradeThreshold;
+    }
+
+    // Retourne false si la file déborde : le client doit être déconnecté
+    boolean offer(GameMessage message) {
+        lock.lock();
+        try {
+            if (closed) {
+                return true;
+            }
+
+            Object key = coalesceKey(message);
+            if (key != null) {
+                Entry pending = coalescable.get(key);
+                if (pending != null) {
+                    pending.message = GameMessage.coalesce(pending.message, message);
+                    totalCoalesced.increment();
+                    return true;
+                }
+            }
+
+            int depth = entries.size();
+            if (depth >= capacity) {
+                totalDropped.increment();
+                return false;
+            }
+            if (depth >= degradeThreshold && isDroppable(message)) {
+                totalDropped.increment();
+                return true;
+            }
+
+            Entry entry = new Entry(message, key);
+            entries.add(entry);
+            if (key != null) {
+                coalescable.put(key, entry);
+            }
+            peakDepth.accumulate(entries.size());
+            if (depth == 0) {
+                notEmpty.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Bloque jusqu'au prochain message ; null une fois la file fermée et vidée
+    GameMessage take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (entries.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            return removeFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Version non bloquante, pour le moteur NIO
+    GameMessage poll() {
+        lock.lock();
+        try {
+            return entries.isEmpty() ? null : removeFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private GameMessage removeFirst() {
+        Entry entry = entries.poll();
+        if (entry.coalesceKey != null) {
+            coalescable.remove(entry.coalesceKey);
+        }
+        return entry.message;
+    }
+
+    // Plus aucun message accepté ; les messages déjà en file restent à envoyer
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Instantané agrégé des files de toutes les connexions
+    static class Stats {
+        final int connections;
+        final int totalDepth;
+        final long peakDepth;
+        final long coalesced;
+        final long dropped;
+        final long slowConsumerDisconnects;
+
+        Stats(int connections, int totalDepth) {
+            this.connections = connections;
+            this.totalDepth = totalDepth;
+            this.peakDepth = OutboundQueue.peakDepth.get();
+            this.coalesced = totalCoalesced.sum();
+            this.dropped = totalDropped.sum();
+            this.slowConsumerDisconnects = OutboundQueue.slowConsumerDisconnects.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "connections=" + connections + " depth=" + totalDepth + " peakDepth=" + peakDepth
+                    + " coalesced=" + coalesced + " dropped=" + dropped
+                    + " slowConsumerDisconnects=" + slowConsumerDisconnects;
+        }
+    }
+
+    private static Object coalesceKey(GameMessage message) {
+        switch (message.getType()) {
+            case PLAYER_POSITION:
+                return message.getPlayerName();
+            case GAME_STATE:
+                return GameMessage.MessageType.GAME_STATE;
+            case ENEMY_UPDATE:
+                return GameMessage.MessageType.ENEMY_UPDATE;
+            default:
+                return null;
+        }
+    }
+
+    // Messages purement visuels qu'un client en retard peut perdre sans désynchroniser la partie
+    private static boolean isDroppable(GameMessage message) {
+        return message.getType() == GameMessage.MessageType.PLAYER_SHOOT;
+    }
+}
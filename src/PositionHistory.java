@@ -0,0 +1,61 @@
+/**
+ * Positions passées d'un joueur, une par tick, pour la compensation de latence : un tir est jugé contre
+ * la position que le tireur voyait à l'écran, pas contre celle du serveur au même instant.
+ *
+ * Tampon circulaire de quelques ticks (--max-rewind-ms), écrit et lu par le seul thread du tick ;
+ * une recherche parcourt au plus la capacité depuis l'entrée la plus récente.
+ */
+class PositionHistory {
+    private final long[] times;
+    private final int[] xs;
+    private final int[] ys;
+    private int head;
+    private int count;
+
+    PositionHistory(int capacity) {
+        times = new long[Math.max(1, capacity)];
+        xs = new int[times.length];
+        ys = new int[times.length];
+    }
+
+    void add(long time, int x, int y) {
+        head = (head + 1) % times.length;
+        times[head] = time;
+        xs[head] = x;
+        ys[head] = y;
+        if (count < times.length) {
+            count++;
+        }
+    }
+
+    /*
+     * Position à l'instant time, interpolée entre les deux ticks qui l'encadrent, écrite dans position
+     * ({x, y}). Bornée à l'entrée la plus ancienne ou la plus récente ; false si rien n'est encore connu.
+     */
+    boolean sample(long time, int[] position) {
+        if (count == 0) {
+            return false;
+        }
+        if (time >= times[head]) {
+            position[0] = xs[head];
+            position[1] = ys[head];
+            return true;
+        }
+        int newer = head;
+        for (int i = 1; i < count; i++) {
+            int older = Math.floorMod(head - i, times.length);
+            if (times[older] <= time) {
+                long span = times[newer] - times[older];
+                double t = span > 0 ? (double) (time - times[older]) / span : 0;
+                position[0] = (int) Math.round(xs[older] + (xs[newer] - xs[older]) * t);
+                position[1] = (int) Math.round(ys[older] + (ys[newer] - ys[older]) * t);
+                return true;
+            }
+            newer = older;
+        }
+        // Plus ancien que tout l'historique : entrée la plus ancienne
+        position[0] = xs[newer];
+        position[1] = ys[newer];
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limite de débit des messages reçus d'une connexion : un seau à jetons par type de message, un pour
+ * l'ensemble des types, et un dernier pour les messages en excès. Vérifié par Server.handleMessage avant
+ * tout traitement ou diffusion, sur chaque message : ni allocation ni appel système.
+ *
+ * Un message en excès est abandonné. Les positions sont absolues, la suivante acceptée rattrape donc
+ * celles qui ont été perdues. Un client qui dépasse durablement la limite vide le seau des excès et
+ * est déconnecté.
+ */
+class RateLimiter {
+    static final int ACCEPT = 0;
+    static final int DROP = 1;
+    static final int KICK = 2;
+
+    private static final int TYPES = GameMessage.MessageType.values().length;
+    private static final int TOTAL = TYPES;
+    private static final int EXCESS = TYPES + 1;
+    // Les jetons sont comptés en milliardièmes : la recharge vaut alors nanosecondes écoulées × débit par seconde
+    private static final long TOKEN = 1_000_000_000L;
+    // Au-delà, tous les seaux sont pleins ; borne la multiplication
+    private static final long MAX_ELAPSED_NANOS = 60_000_000_000L;
+
+    static final LongAdder totalDropped = new LongAdder();
+    static final LongAdder totalKicked = new LongAdder();
+
+    private final int[] rates = new int[TYPES + 2];
+    private final long[] capacities = new long[TYPES + 2];
+    private final long[] tokens = new long[TYPES + 2];
+    private final long[] refilledAt = new long[TYPES + 2];
+    private boolean kicked;
+
+    RateLimiter(ServerConfig config) {
+        for (int i = 0; i < TYPES; i++) {
+            rates[i] = config.ratePerSecond[i];
+            capacities[i] = config.rateBurst[i] * TOKEN;
+        }
+        rates[TOTAL] = config.totalRatePerSecond;
+        capacities[TOTAL] = config.totalRateBurst * TOKEN;
+        // Cinq secondes d'excès tolérées
+        rates[EXCESS] = config.rateKickPerSecond;
+        capacities[EXCESS] = 5L * config.rateKickPerSecond * TOKEN;
+        long now = System.nanoTime();
+        for (int i = 0; i < rates.length; i++) {
+            tokens[i] = capacities[i];
+            refilledAt[i] = now;
+        }
+    }
+
+    // Appelé par le thread de lecture TCP et par celui d'UDP : le verrou n'est pratiquement jamais disputé
+    synchronized int admit(GameMessage.MessageType type, long nowNanos) {
+        int bucket = type.ordinal();
+        // Les deux seaux sont vérifiés avant d'en débiter un : un message refusé ne coûte rien
+        boolean typeAvailable = refill(bucket, nowNanos);
+        boolean totalAvailable = refill(TOTAL, nowNanos);
+        if (typeAvailable && totalAvailable) {
+            spend(bucket);
+            spend(TOTAL);
+            return ACCEPT;
+        }
+        totalDropped.increment();
+        if (kicked) {
+            return DROP;
+        }
+        if (refill(EXCESS, nowNanos)) {
+            spend(EXCESS);
+            return DROP;
+        }
+        // Une seule fois : les messages déjà en route après la déconnexion sont simplement abandonnés
+        kicked = true;
+        totalKicked.increment();
+        return KICK;
+    }
+
+    // Recharge le seau ; vrai s'il contient au moins un jeton (toujours vrai sans limite)
+    private boolean refill(int bucket, long now) {
+        if (rates[bucket] <= 0) {
+            return true;
+        }
+        // Deux threads peuvent lire l'heure dans un ordre et prendre le verrou dans l'autre
+        long elapsed = Math.min(now - refilledAt[bucket], MAX_ELAPSED_NANOS);
+        if (elapsed < 0) {
+            elapsed = 0;
+        } else {
+            refilledAt[bucket] = now;
+        }
+        tokens[bucket] = Math.min(capacities[bucket], tokens[bucket] + elapsed * rates[bucket]);
+        return tokens[bucket] >= TOKEN;
+    }
+
+    // Après refill : débite un jeton, sauf si le seau est vide ou sans limite
+    private void spend(int bucket) {
+        if (rates[bucket] > 0 && tokens[bucket] >= TOKEN) {
+            tokens[bucket] -= TOKEN;
+        }
+    }
+}
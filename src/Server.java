@@ -3,44 +3,78 @@ import java.net.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Point d'entrée du serveur : accepte les connexions et les répartit entre les parties ({@link Match}).
+ * Un PLAYER_JOIN sans matchId (0) rejoint la partie ouverte, dont l'identifiant est attribué en mémoire
+ * et renvoyé dans JOIN_ACCEPTED ; un matchId explicite (bots, benchmarks) désigne une partie précise.
+ * Un même processus héberge autant de parties que nécessaire.
+ */
 public class Server {
-    private static final int PORT = 5555;
-    private static final Set<ClientHandler> clients = new CopyOnWriteArraySet<>();
-    private static final Map<String, PlayerInfo> players = new ConcurrentHashMap<>();
-    private static final Set<String> playerNames = new HashSet<>();
-    private static int maxPlayersEver = 0;
-
-    // Stocke les informations des joueurs
-    static class PlayerInfo {
-        int x, y;
-        int health;
-        int score;
-        int shipType;
-        boolean alive = true;
-
-        public PlayerInfo(int shipType) {
-            this.x = 380;
-            this.y = 450;
-            this.health = 3;
-            this.score = 0;
-            this.shipType = shipType;
-            this.alive = true;
-        }
-    }
+    // Résolution des échéances d'inactivité ; un tour de roue couvre près d'une minute
+    private static final long HEARTBEAT_PERIOD_MS = 100;
+    private static final int HEARTBEAT_SLOTS = 512;
+    // Toutes les connexions ouvertes, y compris celles qui n'ont pas encore rejoint de partie
+    private static final Set<ClientConnection> clients = new CopyOnWriteArraySet<>();
+    private static final Map<Integer, Match> matches = new ConcurrentHashMap<>();
+    private static final Map<ClientConnection, Match> matchOf = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextMatchId = new AtomicInteger(1);
+    // Partie qui accueille les joueurs sans matchId, null tant qu'aucune n'est ouverte ; une partie fermée
+    // n'est jamais rouverte, la suivante prend un nouvel identifiant
+    private static final AtomicReference<Match> openMatch = new AtomicReference<>();
+    private static ServerConfig config = new ServerConfig();
+    private static UdpChannel udp;
+    // null tant que main ne l'a pas démarré (benchmarks en mémoire) : les résultats ne sont pas enregistrés
+    private static MatchResultWriter resultWriter;
+    private static final NetStats stats = new NetStats();
+    // Vrai une fois le port d'écoute ouvert : un client du même processus peut alors passer par la boucle locale
+    private static volatile boolean listening;
+    // Échéances d'inactivité des connexions, avancée par le thread des battements de cœur
+    private static final TimerWheel idleTimers = new TimerWheel(HEARTBEAT_SLOTS, HEARTBEAT_PERIOD_MS * 1_000_000L);
+    private static final Map<ClientConnection, TimerWheel.Timeout> idleTimeouts = new ConcurrentHashMap<>();
+    // Battements écoulés, pour envoyer un PING aux clients une fois par seconde ; lu et écrit par le seul thread des battements
+    private static long heartbeatCount;
+    // Origine de l'horloge serveur transmise aux clients (GAME_STATE, PONG), monotone
+    private static final long START_NANOS = System.nanoTime();
 
     public static void main(String[] args) {
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("Game Server started on port " + PORT);
+        config = ServerConfig.parse(args);
+        // Une seule requête au démarrage, pour ne pas réutiliser les identifiants des parties déjà enregistrées
+        nextMatchId.set(GestionBaseDonnees.getNextMatchId());
+        resultWriter = MatchResultWriter.start();
+        startUdpChannel();
+        startTickLoop();
+        startHeartbeats();
+        if (config.engine == ServerConfig.Engine.NIO) {
+            try {
+                new NioServer(config).run();
+            } catch (IOException e) {
+                System.err.println("Server exception: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        try (ServerSocket serverSocket = new ServerSocket(config.port)) {
+            onListening();
+            System.out.println("Game Server (" + config.engine.name().toLowerCase() + ") started on port " + config.port);
             System.out.println("Waiting for players...");
 
+            Thread.Builder threadBuilder = config.engine == ServerConfig.Engine.VIRTUAL
+                    ? Thread.ofVirtual().name("client-", 0)
+                    : Thread.ofPlatform().name("client-", 0);
             while (true) {
                 Socket clientSocket = serverSocket.accept();
                 System.out.println("New client connected: " + clientSocket.getInetAddress().getHostAddress());
 
-                ClientHandler clientThread = new ClientHandler(clientSocket);
-                clients.add(clientThread);
-                clientThread.start();
+                ClientHandler clientHandler = new ClientHandler(clientSocket, config);
+                addClient(clientHandler);
+                threadBuilder.start(clientHandler);
             }
         } catch (IOException e) {
             System.err.println("Server exception: " + e.getMessage());
@@ -48,219 +82,336 @@ public class Server {
         }
     }
 
-    public static synchronized boolean isNameTaken(String name) {
-        return playerNames.contains(name);
+    private static void startUdpChannel() {
+        if (config.udpPort <= 0) {
+            return;
+        }
+        try {
+            udp = new UdpChannel(config.udpPort);
+            udp.start();
+            System.out.println("UDP channel open on port " + config.udpPort);
+        } catch (IOException e) {
+            System.err.println("UDP channel disabled: " + e.getMessage());
+        }
     }
 
-    public static synchronized void broadcast(GameMessage message, ClientHandler excludeClient) {
-        for (ClientHandler client : clients) {
-            if (client != excludeClient) {
-                client.sendMessage(message);
+    // Les positions ne sont plus rediffusées à l'arrivée : chaque partie envoie un GAME_STATE à chaque tick
+    private static void startTickLoop() {
+        if (config.tickRate <= 0) {
+            return;
+        }
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "server-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMicros = 1_000_000L / config.tickRate;
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                System.err.println("Tick error: " + e.getMessage());
             }
+        }, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    static void tick() {
+        long now = serverTimeMillis();
+        for (Match match : matches.values()) {
+            match.tick(now);
         }
     }
 
-    public static synchronized void addPlayer(String name, int shipType) {
-        playerNames.add(name);
-        players.put(name, new PlayerInfo(shipType));
-        if (playerNames.size() > maxPlayersEver) {
-            maxPlayersEver = playerNames.size();
+    /*
+     * Un PING par seconde à chaque client, auquel il répond par un PONG, et les PING qu'il envoie lui-même :
+     * un client vivant ne reste jamais une seconde silencieux. Une connexion à moitié ouverte (câble
+     * débranché, client figé) est fermée après --idle-timeout-ms, sans attendre le système.
+     */
+    private static void startHeartbeats() {
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "server-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long pingEvery = 1000 / HEARTBEAT_PERIOD_MS;
+        heartbeat.scheduleAtFixedRate(() -> {
+            try {
+                idleTimers.advance(System.nanoTime());
+                if (++heartbeatCount % pingEvery == 0) {
+                    pingClients();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Heartbeat error: " + e.getMessage());
+            }
+        }, HEARTBEAT_PERIOD_MS, HEARTBEAT_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Échéance de la connexion : repoussée tant que des messages arrivent, sinon la connexion est fermée
+    private static long expireIfIdle(ClientConnection client, long nowNanos) {
+        long deadline = client.getStats().getLastReceivedNanos() + config.idleTimeoutMillis * 1_000_000L;
+        if (deadline > nowNanos) {
+            return deadline;
         }
-        updatePlayerList();
+        System.err.println("No message from " + (client.getPlayerName() != null ? client.getPlayerName() : "unknown")
+                + " for " + config.idleTimeoutMillis + " ms, disconnecting");
+        client.close();
+        removeClient(client, client.getPlayerName());
+        return -1;
     }
 
-    public static synchronized void removeClient(ClientHandler client, String name) {
-        clients.remove(client);
-        playerNames.remove(name);
-        PlayerInfo info = players.remove(name);
-        if (info != null) {
-            info.alive = false;
+    static long serverTimeMillis() {
+        return (System.nanoTime() - START_NANOS) / 1_000_000;
+    }
+
+    static void addClient(ClientConnection client) {
+        clients.add(client);
+        if (config.idleTimeoutMillis > 0) {
+            idleTimeouts.put(client, idleTimers.schedule(System.nanoTime() + config.idleTimeoutMillis * 1_000_000L,
+                    now -> expireIfIdle(client, now)));
+        }
+    }
+
+    static void onListening() {
+        listening = true;
+    }
+
+    // Connexion en mémoire pour un client de ce processus ; null si aucun serveur n'écoute ici sur ce port
+    static LoopbackConnection openLoopback(int port) {
+        if (!listening || config.port != port) {
+            return null;
         }
-        System.out.println("Player " + name + " disconnected");
-        GameMessage leaveMsg = GameMessage.createChatMessage("SYSTEM", name + " a quitté le jeu", 0);
-        broadcast(leaveMsg, null);
-        updatePlayerList();
-        checkForWinner();
-    }
-
-    public static synchronized void updatePlayerPosition(String name, int x, int y, int health, int score) {
-        PlayerInfo player = players.get(name);
-        if (player != null) {
-            player.x = x;
-            player.y = y;
-            player.health = health;
-            player.score = score;
-
-            // If player just died (was alive but now has 0 health)
-            if (player.health <= 0 && player.alive) {
-                player.alive = false;
-                // Notify all clients about the player's death
-                GameMessage deathMsg = GameMessage.createChatMessage("SYSTEM", name + " a été éliminé!", 0);
-                broadcast(deathMsg, null);
-                // Immediately check for winner
-                checkForWinner();
+        LoopbackConnection connection = new LoopbackConnection(config);
+        addClient(connection);
+        return connection;
+    }
+
+    // Traite le message PLAYER_JOIN initial ; retourne false si la connexion doit être fermée
+    static boolean handleJoin(ClientConnection client, GameMessage joinMsg) {
+        if (joinMsg.getType() != GameMessage.MessageType.PLAYER_JOIN) {
+            System.err.println("Invalid initial message type from client");
+            return false;
+        }
+
+        int requested = joinMsg.getMatchId();
+        while (true) {
+            Match match = requested > 0 ? matches.computeIfAbsent(requested, id -> new Match(id, config)) : openMatch();
+            switch (match.join(client, joinMsg)) {
+                case ACCEPTED:
+                    matchOf.put(client, match);
+                    return true;
+                case NAME_TAKEN:
+                    return false;
+                default:
+                    // Fermée entre-temps par le départ de son dernier joueur : on en ouvre une nouvelle
+                    matches.remove(match.getId(), match);
+                    openMatch.compareAndSet(match, null);
+                    break;
+            }
+        }
+    }
+
+    // Partie ouverte ; en ouvre une nouvelle, sous un identifiant jamais utilisé, si aucune ne l'est
+    private static Match openMatch() {
+        while (true) {
+            Match current = openMatch.get();
+            if (current != null) {
+                return current;
+            }
+            Match fresh = new Match(allocateMatchId(), config);
+            matches.put(fresh.getId(), fresh);
+            if (openMatch.compareAndSet(null, fresh)) {
+                return fresh;
             }
+            // Un autre joueur en a ouvert une en même temps : celle-ci ne servira pas
+            matches.remove(fresh.getId(), fresh);
+            fresh.closeIfEmpty();
+            fresh.finishClose();
         }
     }
 
-    public static synchronized void updatePlayerList() {
-        StringBuilder sb = new StringBuilder("Online players: ");
-        for (String name : playerNames) {
-            sb.append(name).append(",");
+    private static int allocateMatchId() {
+        int id;
+        do {
+            id = nextMatchId.getAndIncrement();
+        } while (matches.containsKey(id));
+        return id;
+    }
+
+    // Appelé par la partie une fois le nom accepté, avant toute diffusion : partie attribuée et session UDP
+    static void onPlayerAccepted(ClientConnection client, int matchId) {
+        // Pas d'UDP en boucle locale : la file en mémoire est déjà le chemin le plus court
+        boolean datagrams = udp != null && !(client instanceof LoopbackConnection);
+        int sessionId = datagrams ? udp.register(client) : 0;
+        int udpPort = datagrams ? config.udpPort : 0;
+        client.sendMessage(GameMessage.createJoinAcceptedMessage(sessionId, udpPort, matchId, config.tickRate));
+    }
+
+    // Traite un message reçu d'un joueur déjà accepté
+    static void handleMessage(ClientConnection client, GameMessage clientMessage) {
+        switch (client.getRateLimiter().admit(clientMessage.getType(), System.nanoTime())) {
+            case RateLimiter.DROP:
+                return;
+            case RateLimiter.KICK:
+                System.err.println("Rate limit exceeded by " + client.getPlayerName() + ", disconnecting");
+                client.close();
+                return;
+            default:
+                break;
+        }
+        if (clientMessage.getType() == GameMessage.MessageType.PING) {
+            client.sendMessage(GameMessage.createPongMessage(clientMessage.getClientTime(), serverTimeMillis()));
+            return;
         }
-        GameMessage playerListMsg = GameMessage.createChatMessage("SYSTEM", sb.toString(), 0);
-        for (ClientHandler client : clients) {
-            client.sendMessage(playerListMsg);
+        if (clientMessage.getType() == GameMessage.MessageType.PONG) {
+            // Réponse à pingClients : clientTime est l'heure d'envoi du serveur, en nanosecondes
+            client.getStats().recordRtt((System.nanoTime() - clientMessage.getClientTime()) / 1000);
+            return;
+        }
+        Match match = matchOf.get(client);
+        if (match != null) {
+            match.handleMessage(client, clientMessage);
         }
     }
 
-    public static synchronized Map<String, PlayerInfo> getPlayers() {
-        return new HashMap<>(players);
+    // Appelé par une partie à la fin d'une manche ; ne bloque jamais
+    static void saveMatchResult(MatchResultWriter.Result result) {
+        MatchResultWriter writer = resultWriter;
+        if (writer != null) {
+            writer.submit(result);
+        }
     }
 
-    private static synchronized void checkForWinner() {
-        // Only declare a winner if at least 2 players have ever been in the session
-        if (maxPlayersEver < 2) return;
+    static boolean isUdpActive(ClientConnection client) {
+        return udp != null && udp.isActive(client);
+    }
 
-        List<String> alivePlayers = new ArrayList<>();
-        for (Map.Entry<String, PlayerInfo> entry : players.entrySet()) {
-            if (entry.getValue().alive && entry.getValue().health > 0) {
-                alivePlayers.add(entry.getKey());
-            }
+    // Positions et tirs : UDP pour les clients qui l'ont ouvert, TCP pour les autres
+    static void sendUnreliable(ClientConnection client, GameMessage message) {
+        if (udp == null || !udp.send(client, message)) {
+            client.sendMessage(message);
         }
+    }
 
-        // If there's only one player left, they're the winner
-        if (alivePlayers.size() == 1) {
-            String winnerName = alivePlayers.get(0);
-            // Notify all clients about the game over
-            for (ClientHandler client : clients) {
-                boolean isWinner = client.getPlayerName().equals(winnerName);
-                PlayerInfo playerInfo = players.get(client.getPlayerName());
-                int score = playerInfo != null ? playerInfo.score : 0;
-                GameMessage gameOverMsg = GameMessage.createGameOverMessage(client.getPlayerName(), isWinner, score, 0);
-                client.sendMessage(gameOverMsg);
-            }
+    // Mesure le RTT de chaque client côté serveur et sert de battement de cœur ; appelé une fois par seconde.
+    // Seulement les joueurs acceptés : avant, le client n'attend que la réponse à son PLAYER_JOIN
+    static void pingClients() {
+        GameMessage ping = MessageCodec.share(GameMessage.createPingMessage(System.nanoTime()));
+        for (ClientConnection client : matchOf.keySet()) {
+            client.sendMessage(ping);
         }
     }
+
+    public static void removeClient(ClientConnection client, String name) {
+        clients.remove(client);
+        TimerWheel.Timeout idle = idleTimeouts.remove(client);
+        if (idle != null) {
+            idle.cancel();
+        }
+        if (udp != null) {
+            udp.unregister(client);
+        }
+        Match match = matchOf.remove(client);
+        if (match == null) {
+            return;
+        }
+        match.removeClient(client, name);
+        matches.computeIfPresent(match.getId(), (id, current) -> current == match && match.closeIfEmpty() ? null : current);
+        match.finishClose();
+        if (matches.get(match.getId()) != match) {
+            // Fermée : le prochain joueur sans matchId ouvre une nouvelle partie
+            openMatch.compareAndSet(match, null);
+        }
+    }
+
+    // Profondeur des files d'envoi et compteurs de fusion/abandon, pour la supervision
+    public static OutboundQueue.Stats getOutboundStats() {
+        int totalDepth = 0;
+        for (ClientConnection client : clients) {
+            totalDepth += client.getOutboundQueue().size();
+        }
+        return new OutboundQueue.Stats(clients.size(), totalDepth);
+    }
+
+    // Compteurs de tout le serveur, toutes connexions confondues (TCP et UDP)
+    static NetStats getStats() {
+        return stats;
+    }
+
+    static int getMatchCount() {
+        return matches.size();
+    }
 }
 
-class ClientHandler extends Thread {
+class ClientHandler implements Runnable, ClientConnection {
     private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private DataOutputStream out;
+    private DataInputStream in;
     private String playerName;
-    private int shipType;
-    private boolean running = true;
+    private volatile boolean running = true;
+    private final OutboundQueue outbound;
+    private final NetStats stats = new NetStats(Server.getStats());
+    private final RateLimiter rateLimiter;
+    private Thread writerThread;
 
-    public ClientHandler(Socket socket) {
+    public ClientHandler(Socket socket, ServerConfig config) {
         this.socket = socket;
+        this.outbound = new OutboundQueue(config.queueCapacity, config.queueDegradeThreshold);
+        this.rateLimiter = new RateLimiter(config);
     }
 
+    @Override
     public void run() {
+        boolean rejected = false;
         try {
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
 
-            // Étape 1: Recevoir les informations de connexion du joueur
-            GameMessage joinMsg = (GameMessage) in.readObject();
-            if (joinMsg.getType() != GameMessage.MessageType.PLAYER_JOIN) {
-                System.err.println("Invalid initial message type from client");
-                socket.close();
-                return;
-            }
+            // L'écrivain tourne sur le même type de thread que le lecteur (plateforme ou virtuel)
+            Thread.Builder writerBuilder = Thread.currentThread().isVirtual() ? Thread.ofVirtual() : Thread.ofPlatform();
+            writerThread = writerBuilder.name(Thread.currentThread().getName() + "-writer").start(this::writeLoop);
 
+            // Étape 1: Recevoir les informations de connexion du joueur
+            GameMessage joinMsg = MessageCodec.read(in, stats);
             playerName = joinMsg.getPlayerName();
-            shipType = joinMsg.getShipType();
-
-            if (Server.isNameTaken(playerName)) {
-                GameMessage nameExistsMsg = GameMessage.createChatMessage("SYSTEM", "NAME_EXISTS", 0);
-                sendMessage(nameExistsMsg);
-                socket.close();
+            if (!Server.handleJoin(this, joinMsg)) {
+                playerName = null;
+                rejected = true;
                 return;
-            } else {
-                GameMessage nameAcceptedMsg = GameMessage.createChatMessage("SYSTEM", "NAME_ACCEPTED", 0);
-                sendMessage(nameAcceptedMsg);
-                Server.addPlayer(playerName, shipType);
-
-                // Envoyer les informations des autres joueurs déjà connectés
-                for (Map.Entry<String, Server.PlayerInfo> entry : Server.getPlayers().entrySet()) {
-                    if (!entry.getKey().equals(playerName)) {
-                        Server.PlayerInfo pInfo = entry.getValue();
-                        GameMessage existingPlayer = GameMessage.createJoinMessage(entry.getKey(), pInfo.shipType, 0);
-                        sendMessage(existingPlayer);
-                    }
-                }
-
-                // Informer les autres joueurs de l'arrivée d'un nouveau joueur
-                GameMessage newPlayerMsg = GameMessage.createJoinMessage(playerName, shipType, 0);
-                Server.broadcast(newPlayerMsg, this);
-
-                GameMessage chatMsg = GameMessage.createChatMessage("SYSTEM", playerName + " a rejoint le jeu", 0);
-                Server.broadcast(chatMsg, null);
             }
 
             // Boucle principale de traitement des messages
             while (running) {
                 try {
-                    GameMessage clientMessage = (GameMessage) in.readObject();
+                    GameMessage clientMessage = MessageCodec.read(in, stats);
                     if (clientMessage == null) {
                         System.err.println("Received null message from " + playerName);
                         break;
                     }
 
-                    switch (clientMessage.getType()) {
-                        case PLAYER_POSITION:
-                            Server.updatePlayerPosition(
-                                    playerName,
-                                    clientMessage.getX(),
-                                    clientMessage.getY(),
-                                    clientMessage.getHealth(),
-                                    clientMessage.getScore()
-                            );
-                            Server.broadcast(clientMessage, this);
-                            break;
-
-                        case PLAYER_SHOOT:
-                            Server.broadcast(clientMessage, null);
-                            break;
-
-                        case PLAYER_HIT:
-                            Server.broadcast(clientMessage, null);
-                            break;
-
-                        case GAME_OVER:
-                            // Broadcast the game over message to all clients
-                            Server.broadcast(clientMessage, null);
-                            break;
-
-                        case CHAT_MESSAGE:
-                            GameMessage formattedMsg = GameMessage.createChatMessage(
-                                    playerName, clientMessage.getChatContent(), clientMessage.getMatchId()
-                            );
-                            Server.broadcast(formattedMsg, null);
-                            break;
-
-                        default:
-                            System.err.println("Unknown message type from " + playerName + ": " + clientMessage.getType());
-                            break;
-                    }
+                    Server.handleMessage(this, clientMessage);
                 } catch (EOFException e) {
                     System.err.println("Connection closed by client " + playerName);
                     break;
                 } catch (SocketException e) {
                     System.err.println("Socket error for client " + playerName + ": " + e.getMessage());
                     break;
+                } catch (ProtocolException e) {
+                    System.err.println("Invalid message format from " + playerName + ": " + e.getMessage());
+                    break;
                 } catch (IOException e) {
                     System.err.println("IO error for client " + playerName + ": " + e.getMessage());
                     break;
-                } catch (ClassNotFoundException e) {
-                    System.err.println("Invalid message format from " + playerName);
-                    break;
                 }
             }
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             System.err.println("Error handling client " + (playerName != null ? playerName : "unknown") + ": " + e.getMessage());
         } finally {
+            outbound.close();
+            if (rejected) {
+                // Laisser partir la réponse NAME_EXISTS avant de fermer
+                awaitWriter();
+            }
             try {
                 if (socket != null && !socket.isClosed()) {
                     socket.close();
@@ -272,23 +423,78 @@ class ClientHandler extends Thread {
         }
     }
 
-    public void sendMessage(GameMessage message) {
+    // Vide la file d'envoi ; ne force l'envoi sur le réseau que lorsqu'elle est vide
+    private void writeLoop() {
         try {
-            if (out != null) {
-                out.writeObject(message);
-                out.flush();
+            GameMessage message;
+            while ((message = outbound.take()) != null) {
+                stats.recordOut(message.getType(), MessageCodec.write(out, message));
+                if (outbound.isEmpty()) {
+                    out.flush();
+                }
             }
+            out.flush();
         } catch (IOException e) {
-            System.err.println("Error sending message to " + playerName + ": " + e.getMessage());
-            running = false;
+            if (running) {
+                System.err.println("Error sending message to " + playerName + ": " + e.getMessage());
+            }
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitWriter() {
+        try {
+            if (writerThread != null) {
+                writerThread.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void sendMessage(GameMessage message) {
+        if (!outbound.offer(message)) {
+            System.err.println("Outbound queue full for " + playerName + ", disconnecting slow client");
+            OutboundQueue.slowConsumerDisconnects.increment();
+            close();
         }
     }
 
+    @Override
+    public OutboundQueue getOutboundQueue() {
+        return outbound;
+    }
+
+    @Override
+    public NetStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
     public void stopRunning() {
         this.running = false;
     }
 
+    @Override
+    public void close() {
+        running = false;
+        outbound.close();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing socket for " + playerName + ": " + e.getMessage());
+        }
+    }
+
+    @Override
     public String getPlayerName() {
         return playerName;
     }
-}
\ No newline at end of file
+}
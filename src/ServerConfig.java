@@ -0,0 +1,134 @@
+/**
+ * Options de démarrage du serveur, lues depuis les arguments de Server.main sous la forme --cle=valeur.
+ */
+public class ServerConfig {
+    public enum Engine {
+        THREADS,
+        VIRTUAL,
+        NIO
+    }
+
+    int port = 5555;
+    Engine engine = Engine.THREADS;
+    int reactorThreads = Runtime.getRuntime().availableProcessors();
+    int queueCapacity = 512;
+    int queueDegradeThreshold = 256;
+    // Instantanés GAME_STATE par seconde ; 0 rediffuse chaque PLAYER_POSITION dès réception
+    int tickRate = 20;
+    // Ticks entre deux GAME_STATE complets ; entre les deux, seuls les champs modifiés partent
+    int keyframeInterval = 20;
+    // Port du canal UDP pour positions et tirs ; 0 garde tout le trafic sur TCP
+    int udpPort = 5555;
+    // Rayon d'intérêt autour de chaque joueur ; 0 désactive le filtrage (l'arène actuelle tient dans un écran)
+    int interestRadius = 0;
+    // Les joueurs hors du rayon ne sont mis à jour qu'un tick sur N
+    int distantUpdateDivisor = 4;
+    // Retour en arrière maximal pour juger un tir contre ce que voyait le tireur ; 0 désactive la compensation
+    int maxRewindMillis = 200;
+    // Répertoire où enregistrer chaque partie pour la rejouer (MatchReplay) ; null n'enregistre rien
+    String recordDir;
+    // Une connexion dont rien n'est reçu pendant ce délai est fermée ; 0 attend que le système abandonne
+    int idleTimeoutMillis = 10_000;
+    // Messages reçus acceptés par seconde et rafale tolérée, par type (--rate-chat-message=2/5) ; 0 : pas de limite
+    final int[] ratePerSecond = new int[GameMessage.MessageType.values().length];
+    final int[] rateBurst = new int[GameMessage.MessageType.values().length];
+    // Tous types confondus (--rate-total=120/60)
+    int totalRatePerSecond = 120;
+    int totalRateBurst = 60;
+    // Messages en excès tolérés par seconde avant de déconnecter le client ; 0 ne déconnecte jamais
+    int rateKickPerSecond = 20;
+
+    public ServerConfig() {
+        // Le client envoie 30 positions par seconde, un tir toutes les 150 ms au plus et un PING par seconde
+        limit(GameMessage.MessageType.PLAYER_POSITION, 60, 30);
+        limit(GameMessage.MessageType.PLAYER_SHOOT, 15, 10);
+        limit(GameMessage.MessageType.PLAYER_HIT, 15, 10);
+        limit(GameMessage.MessageType.CHAT_MESSAGE, 2, 5);
+        limit(GameMessage.MessageType.PING, 5, 10);
+        limit(GameMessage.MessageType.PONG, 5, 5);
+        limit(GameMessage.MessageType.ROSTER_UPDATE, 2, 4);
+    }
+
+    private void limit(GameMessage.MessageType type, int perSecond, int burst) {
+        ratePerSecond[type.ordinal()] = perSecond;
+        rateBurst[type.ordinal()] = burst;
+    }
+
+    public static ServerConfig parse(String[] args) {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (key) {
+                case "port":
+                    config.port = Integer.parseInt(value);
+                    break;
+                case "engine":
+                    config.engine = Engine.valueOf(value.toUpperCase());
+                    break;
+                case "reactors":
+                    config.reactorThreads = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "queue-capacity":
+                    config.queueCapacity = Integer.parseInt(value);
+                    break;
+                case "queue-degrade":
+                    config.queueDegradeThreshold = Integer.parseInt(value);
+                    break;
+                case "tick-rate":
+                    config.tickRate = Integer.parseInt(value);
+                    break;
+                case "keyframe-interval":
+                    config.keyframeInterval = Integer.parseInt(value);
+                    break;
+                case "udp-port":
+                    config.udpPort = Integer.parseInt(value);
+                    break;
+                case "interest-radius":
+                    config.interestRadius = Integer.parseInt(value);
+                    break;
+                case "distant-divisor":
+                    config.distantUpdateDivisor = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "max-rewind-ms":
+                    config.maxRewindMillis = Math.max(0, Integer.parseInt(value));
+                    break;
+                case "record":
+                    config.recordDir = value;
+                    break;
+                case "idle-timeout-ms":
+                    config.idleTimeoutMillis = Math.max(0, Integer.parseInt(value));
+                    break;
+                case "rate-total":
+                    config.totalRatePerSecond = rateOf(value);
+                    config.totalRateBurst = burstOf(value);
+                    break;
+                case "rate-kick":
+                    config.rateKickPerSecond = Integer.parseInt(value);
+                    break;
+                default:
+                    if (key.startsWith("rate-")) {
+                        // --rate-player-shoot=15/10 : débit par seconde, puis rafale (par défaut le débit)
+                        String type = key.substring("rate-".length()).replace('-', '_').toUpperCase();
+                        config.limit(GameMessage.MessageType.valueOf(type), rateOf(value), burstOf(value));
+                        break;
+                    }
+                    throw new IllegalArgumentException("Unknown option: " + key);
+            }
+        }
+        return config;
+    }
+
+    private static int rateOf(String value) {
+        int slash = value.indexOf('/');
+        return Integer.parseInt(slash < 0 ? value : value.substring(0, slash));
+    }
+
+    private static int burstOf(String value) {
+        int slash = value.indexOf('/');
+        return Math.max(1, Integer.parseInt(slash < 0 ? value : value.substring(slash + 1)));
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Grille uniforme des joueurs d'une partie, pour ne diffuser une mise à jour qu'aux clients concernés.
+ *
+ * Reconstruite à chaque tick par le thread du tick puis publiée : une fois publiée elle n'est plus
+ * modifiée, les threads de lecture peuvent l'interroger sans verrou.
+ */
+class SpatialGrid {
+    static final class Entry {
+        final ClientConnection client;
+        final String name;
+        final int x, y;
+
+        Entry(ClientConnection client, String name, int x, int y) {
+            this.client = client;
+            this.name = name;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private final int cellSize;
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+    private int minCellY = Integer.MAX_VALUE;
+    private int maxCellY = Integer.MIN_VALUE;
+
+    SpatialGrid(int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+    }
+
+    void insert(ClientConnection client, String name, int x, int y) {
+        int cy = Math.floorDiv(y, cellSize);
+        cells.computeIfAbsent(key(Math.floorDiv(x, cellSize), cy), k -> new ArrayList<>())
+                .add(new Entry(client, name, x, y));
+        minCellY = Math.min(minCellY, cy);
+        maxCellY = Math.max(maxCellY, cy);
+    }
+
+    // Joueurs à moins de radius de (x, y)
+    void forEachWithin(int x, int y, int radius, Consumer<Entry> action) {
+        long radiusSquared = (long) radius * radius;
+        for (int cx = Math.floorDiv(x - radius, cellSize); cx <= Math.floorDiv(x + radius, cellSize); cx++) {
+            for (int cy = Math.floorDiv(y - radius, cellSize); cy <= Math.floorDiv(y + radius, cellSize); cy++) {
+                List<Entry> cell = cells.get(key(cx, cy));
+                if (cell == null) {
+                    continue;
+                }
+                for (Entry entry : cell) {
+                    long dx = entry.x - x;
+                    long dy = entry.y - y;
+                    if (dx * dx + dy * dy <= radiusSquared) {
+                        action.accept(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    // Joueurs dont l'abscisse est à moins de radius de x, quelle que soit leur ordonnée (trajectoire d'un tir vertical)
+    void forEachInColumn(int x, int radius, Consumer<Entry> action) {
+        for (int cx = Math.floorDiv(x - radius, cellSize); cx <= Math.floorDiv(x + radius, cellSize); cx++) {
+            for (int cy = minCellY; cy <= maxCellY; cy++) {
+                List<Entry> cell = cells.get(key(cx, cy));
+                if (cell == null) {
+                    continue;
+                }
+                for (Entry entry : cell) {
+                    if (Math.abs(entry.x - x) <= radius) {
+                        action.accept(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,72 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * File bornée sans verrou pour un seul producteur et un seul consommateur (un thread d'écoute et la
+ * boucle de jeu). Tableau circulaire de taille puissance de deux ; chaque côté n'écrit que son propre
+ * indice, publié avec une écriture « release » et lu par l'autre côté avec une lecture « acquire ».
+ * Chaque côté garde une copie de l'indice de l'autre et ne la relit que lorsque la file lui semble
+ * pleine (ou vide) : un offer() ou un poll() ordinaire ne touche que des données locales.
+ */
+class SpscQueue<E> {
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+    private static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(SpscQueue.class, "head", long.class);
+            TAIL = lookup.findVarHandle(SpscQueue.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] elements;
+    private final int mask;
+    // Prochain élément à lire, écrit par le seul consommateur
+    private long head;
+    private long cachedTail;
+    // Prochaine case libre, écrite par le seul producteur
+    private long tail;
+    private long cachedHead;
+
+    // capacity est arrondie à une puissance de deux
+    SpscQueue(int capacity) {
+        this.elements = new Object[Integer.highestOneBit(Math.max(2, capacity) - 1) << 1];
+        this.mask = elements.length - 1;
+    }
+
+    // Producteur ; false si la file est pleine
+    boolean offer(E element) {
+        long t = tail;
+        if (t - cachedHead >= elements.length) {
+            cachedHead = (long) HEAD.getAcquire(this);
+            if (t - cachedHead >= elements.length) {
+                return false;
+            }
+        }
+        ELEMENTS.setRelease(elements, (int) (t & mask), element);
+        TAIL.setRelease(this, t + 1);
+        return true;
+    }
+
+    // Consommateur ; null si la file est vide
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long h = head;
+        if (h >= cachedTail) {
+            cachedTail = (long) TAIL.getAcquire(this);
+            if (h >= cachedTail) {
+                return null;
+            }
+        }
+        int slot = (int) (h & mask);
+        E element = (E) ELEMENTS.getAcquire(elements, slot);
+        // Libère la référence pour le ramasse-miettes avant de rendre la case au producteur
+        ELEMENTS.setOpaque(elements, slot, null);
+        HEAD.setRelease(this, h + 1);
+        return element;
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Roue temporelle hachée : des milliers d'échéances pour un coût constant, quel que soit leur nombre.
+ * Chaque case couvre une durée fixe (la résolution) ; une échéance est rangée dans la case de son
+ * instant, avec le nombre de tours de roue à attendre. advance() ne parcourt que les cases écoulées.
+ *
+ * Un seul thread fait tourner la roue ; schedule() peut être appelé de partout, les nouvelles
+ * échéances sont rangées au prochain advance(). Plutôt que de déplacer une échéance à chaque message
+ * reçu, son action peut demander à être reprogrammée quand elle se déclenche (voir {@link Action}).
+ */
+class TimerWheel {
+    interface Action {
+        // Appelée à l'échéance ; retourne la prochaine échéance en nanosecondes, ou -1 pour s'arrêter
+        long expire(long nowNanos);
+    }
+
+    static class Timeout {
+        private final Action action;
+        private long deadline;
+        private long rounds;
+        private Timeout next;
+        private volatile boolean cancelled;
+
+        private Timeout(Action action, long deadline) {
+            this.action = action;
+            this.deadline = deadline;
+        }
+
+        // Retiré de la roue à son prochain passage
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final Timeout[] slots;
+    private final int mask;
+    private final long resolutionNanos;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    // Dernière case traitée, en nombre de résolutions depuis l'origine de System.nanoTime
+    private long currentTick;
+
+    // slotCount est arrondi à une puissance de deux
+    TimerWheel(int slotCount, long resolutionNanos) {
+        this.slots = new Timeout[Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1];
+        this.mask = slots.length - 1;
+        this.resolutionNanos = resolutionNanos;
+        this.currentTick = System.nanoTime() / resolutionNanos;
+    }
+
+    Timeout schedule(long deadlineNanos, Action action) {
+        Timeout timeout = new Timeout(action, deadlineNanos);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    // Déclenche les échéances passées ; appelé régulièrement par le thread de la roue
+    void advance(long nowNanos) {
+        for (Timeout timeout; (timeout = pending.poll()) != null; ) {
+            place(timeout);
+        }
+        long target = nowNanos / resolutionNanos;
+        // Après une longue pause, un tour complet suffit : les cases suivantes sont les mêmes
+        long from = Math.max(currentTick + 1, target - mask);
+        for (long tick = from; tick <= target; tick++) {
+            currentTick = tick;
+            expireSlot((int) (tick & mask), nowNanos);
+        }
+    }
+
+    private void place(Timeout timeout) {
+        // Jamais dans la case courante, déjà traitée : au plus tôt dans la suivante
+        long tick = Math.max(timeout.deadline / resolutionNanos, currentTick + 1);
+        timeout.rounds = (tick - currentTick - 1) / slots.length;
+        int slot = (int) (tick & mask);
+        timeout.next = slots[slot];
+        slots[slot] = timeout;
+    }
+
+    private void expireSlot(int slot, long nowNanos) {
+        Timeout timeout = slots[slot];
+        slots[slot] = null;
+        Timeout kept = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.cancelled) {
+                // Abandonnée
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+                timeout.next = kept;
+                kept = timeout;
+            } else if (timeout.deadline > nowNanos) {
+                // Plus tard dans la case courante : case suivante
+                place(timeout);
+            } else {
+                long again = timeout.action.expire(nowNanos);
+                if (again >= 0) {
+                    timeout.deadline = again;
+                    place(timeout);
+                }
+            }
+            timeout = next;
+        }
+        // Les échéances replacées dans cette case pendant le parcours sont aussi pour un tour suivant
+        while (kept != null) {
+            Timeout next = kept.next;
+            kept.next = slots[slot];
+            slots[slot] = kept;
+            kept = next;
+        }
+    }
+}
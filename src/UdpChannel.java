@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Canal UDP facultatif du serveur pour le trafic à haute fréquence : positions, tirs et GAME_STATE.
+ *
+ * Chaque joueur accepté reçoit sur TCP un identifiant de session (JOIN_ACCEPTED). L'adresse UDP du
+ * client est apprise à son premier datagramme valide ; d'ici là, ou si la trame est trop grande pour
+ * un datagramme, {@link #send} retourne false et l'appelant passe par TCP. Les numéros de séquence
+ * écartent les datagrammes arrivés en retard. Connexion, chat, hits et fin de partie restent sur TCP.
+ */
+class UdpChannel implements Runnable {
+    private final DatagramChannel channel;
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<ClientConnection, Session> byClient = new ConcurrentHashMap<>();
+    private final ThreadLocal<ByteBuffer> sendBuffers = ThreadLocal.withInitial(() ->
+            ByteBuffer.allocate(MessageCodec.DATAGRAM_HEADER + MessageCodec.LENGTH_PREFIX + MessageCodec.MAX_FRAME_SIZE));
+
+    private static class Session {
+        final int id;
+        final ClientConnection client;
+        final AtomicInteger nextSeqOut = new AtomicInteger();
+        volatile SocketAddress address;
+        // Lus et écrits par le seul thread de réception
+        int lastSeqIn;
+        boolean received;
+
+        Session(int id, ClientConnection client) {
+            this.id = id;
+            this.client = client;
+        }
+    }
+
+    UdpChannel(int port) throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "udp-receiver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Ouvre une session pour un joueur accepté et retourne son identifiant
+    int register(ClientConnection client) {
+        while (true) {
+            int id = ThreadLocalRandom.current().nextInt();
+            Session session = new Session(id, client);
+            if (id != 0 && sessions.putIfAbsent(id, session) == null) {
+                byClient.put(client, session);
+                return id;
+            }
+        }
+    }
+
+    void unregister(ClientConnection client) {
+        Session session = byClient.remove(client);
+        if (session != null) {
+            sessions.remove(session.id);
+        }
+    }
+
+    // Vrai si le client a déjà envoyé un datagramme : le serveur peut lui répondre en UDP
+    boolean isActive(ClientConnection client) {
+        Session session = byClient.get(client);
+        return session != null && session.address != null;
+    }
+
+    // Envoie le message en UDP ; false si le client doit le recevoir par TCP
+    boolean send(ClientConnection client, GameMessage message) {
+        Session session = byClient.get(client);
+        if (session == null || session.address == null) {
+            return false;
+        }
+        ByteBuffer buffer = sendBuffers.get();
+        if (!MessageCodec.encodeDatagram(session.id, session.nextSeqOut.incrementAndGet(), message, buffer)) {
+            return false;
+        }
+        try {
+            int size = buffer.remaining();
+            channel.send(buffer, session.address);
+            client.getStats().recordOut(message.getType(), size);
+            return true;
+        } catch (IOException e) {
+            System.err.println("UDP send error for " + client.getPlayerName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        ByteBuffer buffer = ByteBuffer.allocate(MessageCodec.MAX_DATAGRAM_SIZE);
+        while (true) {
+            try {
+                buffer.clear();
+                SocketAddress from = channel.receive(buffer);
+                buffer.flip();
+                int size = buffer.remaining();
+                if (buffer.remaining() < MessageCodec.DATAGRAM_HEADER) {
+                    continue;
+                }
+                Session session = sessions.get(buffer.getInt());
+                if (session == null) {
+                    continue;
+                }
+                int seq = buffer.getInt();
+                if (session.received && seq - session.lastSeqIn <= 0) {
+                    // Datagramme en retard ou dupliqué : un plus récent a déjà été appliqué
+                    continue;
+                }
+                GameMessage message = MessageCodec.decodeDatagramFrame(buffer);
+                session.received = true;
+                session.lastSeqIn = seq;
+                session.address = from;
+                session.client.getStats().recordIn(message.getType(), size);
+                switch (message.getType()) {
+                    case PLAYER_POSITION:
+                    case PLAYER_SHOOT:
+                        Server.handleMessage(session.client, message);
+                        break;
+                    default:
+                        System.err.println("Ignoring " + message.getType() + " received over UDP");
+                        break;
+                }
+            } catch (ProtocolException e) {
+                System.err.println("Invalid datagram: " + e.getMessage());
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("UDP receive error: " + e.getMessage());
+            }
+        }
+    }
+}